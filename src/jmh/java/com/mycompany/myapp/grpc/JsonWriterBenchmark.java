@@ -0,0 +1,64 @@
+package com.mycompany.myapp.grpc;
+
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps 10,000 persisted audit events to the messages sent by AuditGrpcService.getAuditEvents, with their JSON data
+ * written by AuditGrpcService.addJsonData with the shared ProtobufMappers.JSON_WRITER, and by a new ObjectMapper for
+ * each event like before it was shared.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonWriterBenchmark {
+
+    private static final int EVENT_COUNT = 10_000;
+
+    private PersistentAuditEvent[] events;
+
+    @Setup
+    public void setup() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        events = new PersistentAuditEvent[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("user" + i % 1000);
+            event.setAuditEventType("AUTHENTICATION_FAILURE");
+            event.setAuditEventDate(start.plusSeconds(i));
+            Map<String, String> data = new HashMap<>();
+            data.put("remoteAddress", "10.0." + (i / 256 % 256) + "." + (i % 256));
+            data.put("sessionId", String.format("%032x", i));
+            data.put("message", "Bad credentials");
+            event.setData(data);
+            events[i] = event;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void sharedWriter(Blackhole blackhole) throws JsonProcessingException {
+        for (PersistentAuditEvent event : events) {
+            blackhole.consume(AuditGrpcService.addJsonData(ProtobufMappers.persistentAuditEventToAuditEventProto(event)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void newObjectMapper(Blackhole blackhole) throws JsonProcessingException {
+        for (PersistentAuditEvent event : events) {
+            AuditEvent auditEvent = ProtobufMappers.persistentAuditEventToAuditEventProto(event);
+            blackhole.consume(auditEvent.toBuilder()
+                .setData(new ObjectMapper().writeValueAsString(auditEvent.getDataMapMap()))
+                .build());
+        }
+    }
+}
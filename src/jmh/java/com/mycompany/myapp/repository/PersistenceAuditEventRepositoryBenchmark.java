@@ -0,0 +1,142 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.config.audit.AuditEventConverter;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+
+import io.github.jhipster.config.JHipsterConstants;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the audit event finders, and streams the events of a day, over 5,000,000 events of 1,000 principals recorded
+ * during 100 days, each with two data entries. The 100,000 events run only takes a few minutes to set up, to check a
+ * change quickly: at this size the whole table is cheap to scan, so it doesn't tell whether the indexes are used.
+ * <p>
+ * The events are stored in an in-memory H2 database, created by the Liquibase changelog of the dev profile, so the
+ * indexes and the batch fetching of the data are the ones of the application.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Xmx6g")
+public class PersistenceAuditEventRepositoryBenchmark {
+
+    private static final int PRINCIPAL_COUNT = 1_000;
+
+    private static final int DAY_COUNT = 100;
+
+    private static final int CHUNK_SIZE = 10_000;
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static final String EVENT_TYPE = "AUTHENTICATION_SUCCESS";
+
+    @Param({"5000000", "100000"})
+    private int eventCount;
+
+    private ConfigurableApplicationContext context;
+
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private AuditEventConverter auditEventConverter;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(AgathaApp.class)
+            .profiles(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)
+            .run("--spring.datasource.url=jdbc:h2:mem:audit-benchmark",
+                "--spring.jpa.show-sql=false",
+                "--spring.jmx.enabled=false",
+                "--server.port=0",
+                "--grpc.port=0",
+                "--application.mail.enabled=false");
+        persistenceAuditEventRepository = context.getBean(PersistenceAuditEventRepository.class);
+        auditEventConverter = context.getBean(AuditEventConverter.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+
+        // Generated by H2, in chunks of a short transaction each, as inserting the rows one by one with their ids would
+        // update the id sequence each time
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long interval = DAY_COUNT * TimeUnit.DAYS.toMillis(1) / eventCount;
+        for (int chunk = 0; chunk < eventCount; chunk += CHUNK_SIZE) {
+            jdbcTemplate.update("insert into jhi_persistent_audit_event (principal, event_date, event_type) " +
+                "select concat('user', mod(x, ?)), dateadd('MILLISECOND', x * ?, ?), ? from system_range(?, ?)",
+                PRINCIPAL_COUNT, interval, Timestamp.from(START), EVENT_TYPE, chunk, chunk + CHUNK_SIZE - 1);
+        }
+        long firstEventId = jdbcTemplate.queryForObject("select min(event_id) from jhi_persistent_audit_event", Long.class);
+        for (long chunk = firstEventId; chunk < firstEventId + eventCount; chunk += CHUNK_SIZE) {
+            jdbcTemplate.update("insert into jhi_persistent_audit_evt_data (event_id, name, value) " +
+                "select event_id, 'remoteAddress', concat('10.0.', mod(event_id / 256, 256), '.', mod(event_id, 256)) " +
+                "from jhi_persistent_audit_event where event_id between ? and ?", chunk, chunk + CHUNK_SIZE - 1);
+            jdbcTemplate.update("insert into jhi_persistent_audit_evt_data (event_id, name, value) " +
+                "select event_id, 'sessionId', concat('session-', event_id) " +
+                "from jhi_persistent_audit_event where event_id between ? and ?", chunk, chunk + CHUNK_SIZE - 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void findByPrincipalAndAuditEventDateAfterAndAuditEventType(Blackhole blackhole) {
+        String principal = principal(next++);
+        Instant after = START.plus(DAY_COUNT / 2, ChronoUnit.DAYS);
+        transactionTemplate.execute(status -> {
+            List<PersistentAuditEvent> events =
+                persistenceAuditEventRepository.findByPrincipalAndAuditEventDateAfterAndAuditEventType(principal, after, EVENT_TYPE);
+            blackhole.consume(auditEventConverter.convertToAuditEvent(events));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void findAllByAuditEventDateBetween(Blackhole blackhole) {
+        Instant from = day(next++);
+        transactionTemplate.execute(status -> {
+            List<PersistentAuditEvent> events = persistenceAuditEventRepository.findAllByAuditEventDateBetween(
+                from, from.plus(1, ChronoUnit.DAYS), new PageRequest(0, 20)).getContent();
+            blackhole.consume(auditEventConverter.convertToAuditEvent(events));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void streamAllByAuditEventDateBetween(Blackhole blackhole) {
+        Instant from = day(next++);
+        try (EntityCursor<PersistentAuditEvent> cursor = persistenceAuditEventRepository.streamAllByAuditEventDateBetween(
+            from, from.plus(1, ChronoUnit.DAYS),
+            new PageRequest(0, Integer.MAX_VALUE, Sort.Direction.ASC, "auditEventDate", "id"))) {
+            while (cursor.hasNext()) {
+                blackhole.consume(cursor.next().getData().size());
+            }
+        }
+    }
+
+    private static String principal(int i) {
+        return "user" + (i % PRINCIPAL_COUNT);
+    }
+
+    private static Instant day(int i) {
+        return START.plus(i % DAY_COUNT, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,89 @@
+package com.mycompany.myapp.security.jwt;
+
+import com.mycompany.myapp.security.AuthoritiesConstants;
+
+import com.codahale.metrics.MetricRegistry;
+import io.github.jhipster.config.JHipsterProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Gets the authentication of the tokens of 1,000 clients: with the TokenAuthenticationCache, by parsing and verifying
+ * each token once without the cache, and by parsing it twice like before, once to validate it and once to get its
+ * authentication.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenProviderBenchmark {
+
+    private static final int TOKEN_COUNT = 1_000;
+
+    private static final String SECRET = "my-secret-token-to-change-in-production";
+
+    private TokenProvider tokenProvider;
+
+    private TokenProvider uncachedTokenProvider;
+
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setSecret(SECRET);
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setTokenValidityInSeconds(86400);
+        tokenProvider = new TokenProvider(jHipsterProperties, new MetricRegistry());
+        tokenProvider.init();
+        uncachedTokenProvider = new TokenProvider(jHipsterProperties, new MetricRegistry(), 0);
+        uncachedTokenProvider.init();
+
+        tokens = new String[TOKEN_COUNT];
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            tokens[i] = tokenProvider.createToken(new UsernamePasswordAuthenticationToken("user" + i, "",
+                Arrays.asList(new SimpleGrantedAuthority(AuthoritiesConstants.USER))), false);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void cached(Blackhole blackhole) {
+        for (String token : tokens) {
+            blackhole.consume(tokenProvider.parseAuthentication(token));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void uncached(Blackhole blackhole) {
+        for (String token : tokens) {
+            blackhole.consume(uncachedTokenProvider.parseAuthentication(token));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void uncachedTwoPasses(Blackhole blackhole) {
+        for (String token : tokens) {
+            // validateToken
+            Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
+            // getAuthentication
+            Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+            Collection<? extends GrantedAuthority> authorities =
+                Arrays.stream(claims.get("auth").toString().split(","))
+                    .map(SimpleGrantedAuthority::new)
+                    .collect(Collectors.toList());
+            User principal = new User(claims.getSubject(), "", authorities);
+            blackhole.consume(new UsernamePasswordAuthenticationToken(principal, token, authorities));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.config.ThymeleafConfiguration;
+import com.mycompany.myapp.domain.User;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.apache.commons.lang3.CharEncoding;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the creation and password reset emails of 100,000 users, with and without the cached templates.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MailTemplateRendererBenchmark {
+
+    private static final int USER_COUNT = 100_000;
+
+    @Param({"creationEmail", "passwordResetEmail"})
+    private String templateName;
+
+    private String titleKey;
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private MailTemplateRenderer mailTemplateRenderer;
+
+    private User[] users;
+
+    @Setup
+    public void setup() {
+        // The subjects sent by MailService with these templates
+        titleKey = "creationEmail".equals(templateName) ? "email.activation.title" : "email.reset.title";
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        messageSource.setDefaultEncoding(CharEncoding.UTF_8);
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(new ThymeleafConfiguration().emailTemplateResolver());
+        templateEngine.setMessageSource(messageSource);
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getMail().setBaseUrl("http://127.0.0.1:8080");
+        ThymeleafProperties thymeleafProperties = new ThymeleafProperties();
+        thymeleafProperties.setCache(cache);
+        mailTemplateRenderer = new MailTemplateRenderer(jHipsterProperties, messageSource, templateEngine,
+            thymeleafProperties);
+
+        users = new User[USER_COUNT];
+        for (int i = 0; i < USER_COUNT; i++) {
+            User user = new User();
+            user.setLogin("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLangKey("en");
+            user.setResetKey(String.format("%020d", i));
+            users[i] = user;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USER_COUNT)
+    public void render(Blackhole blackhole) {
+        for (User user : users) {
+            blackhole.consume(mailTemplateRenderer.renderSubject(user, titleKey));
+            blackhole.consume(mailTemplateRenderer.renderContent(user, templateName));
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.mycompany.myapp.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.io.File;
+
 /**
  * Properties specific to Agatha.
  * <p>
@@ -11,4 +13,602 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Grpc grpc = new Grpc();
+
+    private final Audit audit = new Audit();
+
+    private final Health health = new Health();
+
+    private final Mail mail = new Mail();
+
+    private final Async async = new Async();
+
+    private final Cache cache = new Cache();
+
+    public Grpc getGrpc() {
+        return grpc;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public Health getHealth() {
+        return health;
+    }
+
+    public Mail getMail() {
+        return mail;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public static class Grpc {
+
+        private final Scheduler scheduler = new Scheduler();
+
+        public Scheduler getScheduler() {
+            return scheduler;
+        }
+
+        public static class Scheduler {
+
+            /**
+             * Number of threads running the blocking work of the gRPC services.
+             * 0 means the maximum size of the Hikari connection pool.
+             */
+            private int poolSize = 0;
+
+            private int queueCapacity = 1000;
+
+            public int getPoolSize() {
+                return poolSize;
+            }
+
+            public void setPoolSize(int poolSize) {
+                this.poolSize = poolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+        }
+    }
+
+    public static class Audit {
+
+        /**
+         * Number of days the audit events are kept. On MySQL, they are removed by whole monthly partitions.
+         */
+        private int retentionDays = 30;
+
+        /**
+         * Time, in milliseconds, after which an audit event is surely stored. A SubscribeAuditEvents replay reads the
+         * stored events until that long before the subscription, the more recent ones are kept in memory for the new
+         * subscribers. Must be longer than the writer flush interval.
+         */
+        private long subscriptionOverlap = 10000;
+
+        private final Writer writer = new Writer();
+
+        private final SegmentLog segmentLog = new SegmentLog();
+
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        public void setRetentionDays(int retentionDays) {
+            this.retentionDays = retentionDays;
+        }
+
+        public long getSubscriptionOverlap() {
+            return subscriptionOverlap;
+        }
+
+        public void setSubscriptionOverlap(long subscriptionOverlap) {
+            this.subscriptionOverlap = subscriptionOverlap;
+        }
+
+        public Writer getWriter() {
+            return writer;
+        }
+
+        public SegmentLog getSegmentLog() {
+            return segmentLog;
+        }
+
+        public static class Writer {
+
+            /**
+             * Write the audit events in batches from a background thread, instead of one by one in the audited thread.
+             */
+            private boolean async = false;
+
+            private int queueCapacity = 10000;
+
+            private int batchSize = 100;
+
+            /**
+             * Maximum time, in milliseconds, to wait for a batch to fill up before writing it.
+             */
+            private long flushInterval = 1000;
+
+            private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+            public boolean isAsync() {
+                return async;
+            }
+
+            public void setAsync(boolean async) {
+                this.async = async;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getFlushInterval() {
+                return flushInterval;
+            }
+
+            public void setFlushInterval(long flushInterval) {
+                this.flushInterval = flushInterval;
+            }
+
+            public OverflowPolicy getOverflowPolicy() {
+                return overflowPolicy;
+            }
+
+            public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+                this.overflowPolicy = overflowPolicy;
+            }
+
+            /**
+             * What to do with an audit event when the queue is full.
+             */
+            public enum OverflowPolicy {
+                /** Drop the event, counted by the audit.writer.dropped metric */
+                DROP,
+                /** Block the audited thread until there is room in the queue */
+                BLOCK
+            }
+        }
+
+        public static class SegmentLog {
+
+            private String directory = "build/audit-log";
+
+            /**
+             * Maximum size, in bytes, of a segment file before rolling to a new one.
+             */
+            private int segmentSize = 64 * 1024 * 1024;
+
+            /**
+             * Number of bytes of audit events between two entries of the sparse timestamp index.
+             */
+            private int indexInterval = 4096;
+
+            /**
+             * Number of events after which the appends are forced to disk.
+             */
+            private int flushEvents = 1000;
+
+            /**
+             * Time, in milliseconds, after which the appends are forced to disk. Up to this time, or flush-events
+             * events, can be lost when the host crashes.
+             */
+            private long flushInterval = 1000;
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public int getSegmentSize() {
+                return segmentSize;
+            }
+
+            public void setSegmentSize(int segmentSize) {
+                this.segmentSize = segmentSize;
+            }
+
+            public int getIndexInterval() {
+                return indexInterval;
+            }
+
+            public void setIndexInterval(int indexInterval) {
+                this.indexInterval = indexInterval;
+            }
+
+            public int getFlushEvents() {
+                return flushEvents;
+            }
+
+            public void setFlushEvents(int flushEvents) {
+                this.flushEvents = flushEvents;
+            }
+
+            public long getFlushInterval() {
+                return flushInterval;
+            }
+
+            public void setFlushInterval(long flushInterval) {
+                this.flushInterval = flushInterval;
+            }
+        }
+    }
+
+    public static class Health {
+
+        /**
+         * Time, in milliseconds, between two checks of the health indicators.
+         */
+        private long refreshInterval = 10000;
+
+        /**
+         * Time, in milliseconds, after which a health indicator which didn't answer is reported DOWN.
+         */
+        private long timeout = 5000;
+
+        public long getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(long refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class Mail {
+
+        /**
+         * Whether this instance sends the emails of the outbox. The emails are queued in any case.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Time, in milliseconds, between two polls of the outbox.
+         */
+        private long pollInterval = 1000;
+
+        /**
+         * Maximum number of emails sent over a single SMTP connection.
+         */
+        private int batchSize = 50;
+
+        /**
+         * Number of failed sends after which an email is abandoned.
+         */
+        private int maxAttempts = 10;
+
+        /**
+         * Time, in milliseconds, before the first retry of an email. It doubles with each failed send.
+         */
+        private long initialBackoff = 60000;
+
+        /**
+         * Maximum time, in milliseconds, between two retries of an email.
+         */
+        private long maxBackoff = 3600000;
+
+        /**
+         * Time, in milliseconds, during which the emails of a batch are claimed by the instance sending them. It must
+         * be longer than the time to send a batch, bounded by the SMTP timeouts of spring.mail.properties.
+         */
+        private long lease = 600000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public long getLease() {
+            return lease;
+        }
+
+        public void setLease(long lease) {
+            this.lease = lease;
+        }
+    }
+
+    public static class Async {
+
+        private final Executor mail = new Executor(1, 2, 100, Executor.RejectionPolicy.ABORT);
+
+        private final Executor liquibase = new Executor(1, 1, 0, Executor.RejectionPolicy.ABORT);
+
+        private final Executor audit = new Executor(1, 2, 100, Executor.RejectionPolicy.ABORT);
+
+        private final Executor cache = new Executor(1, 2, 1000, Executor.RejectionPolicy.DISCARD_OLDEST);
+
+        private final Executor health = new Executor(1, 8, 0, Executor.RejectionPolicy.ABORT);
+
+        public Executor getMail() {
+            return mail;
+        }
+
+        public Executor getLiquibase() {
+            return liquibase;
+        }
+
+        public Executor getAudit() {
+            return audit;
+        }
+
+        public Executor getCache() {
+            return cache;
+        }
+
+        public Executor getHealth() {
+            return health;
+        }
+
+        public static class Executor {
+
+            private int corePoolSize;
+
+            private int maxPoolSize;
+
+            /**
+             * Number of tasks waiting for a thread, 0 hands the tasks over to the threads without queuing them.
+             */
+            private int queueCapacity;
+
+            /**
+             * What to do with a task when all the threads are busy and the queue is full.
+             */
+            private RejectionPolicy rejectionPolicy;
+
+            public Executor(int corePoolSize, int maxPoolSize, int queueCapacity, RejectionPolicy rejectionPolicy) {
+                this.corePoolSize = corePoolSize;
+                this.maxPoolSize = maxPoolSize;
+                this.queueCapacity = queueCapacity;
+                this.rejectionPolicy = rejectionPolicy;
+            }
+
+            public int getCorePoolSize() {
+                return corePoolSize;
+            }
+
+            public void setCorePoolSize(int corePoolSize) {
+                this.corePoolSize = corePoolSize;
+            }
+
+            public int getMaxPoolSize() {
+                return maxPoolSize;
+            }
+
+            public void setMaxPoolSize(int maxPoolSize) {
+                this.maxPoolSize = maxPoolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public RejectionPolicy getRejectionPolicy() {
+                return rejectionPolicy;
+            }
+
+            public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+                this.rejectionPolicy = rejectionPolicy;
+            }
+
+            public enum RejectionPolicy {
+                /**
+                 * Throw a RejectedExecutionException to the submitter.
+                 */
+                ABORT,
+                /**
+                 * Run the task in the thread of the submitter.
+                 */
+                CALLER_RUNS,
+                /**
+                 * Drop the task.
+                 */
+                DISCARD,
+                /**
+                 * Drop the oldest queued task, and queue this one.
+                 */
+                DISCARD_OLDEST
+            }
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Directory of the disk tiers, by default agatha-cache in the temporary directory.
+         * It can't be shared by several instances of the application.
+         */
+        private String diskDirectory = new File(System.getProperty("java.io.tmpdir"), "agatha-cache").getPath();
+
+        /**
+         * The users cache of the UserCache.
+         */
+        private final Tiers users = new Tiers();
+
+        /**
+         * The email and id indexes of the users cache, which only hold the logins.
+         */
+        private final Tiers usersIndexes = new Tiers();
+
+        /**
+         * The second level cache of the User entity.
+         */
+        private final Tiers user = new Tiers();
+
+        /**
+         * The second level cache of the Authority entity.
+         */
+        private final Tiers authority = new Tiers();
+
+        /**
+         * The second level cache of the User.authorities collection.
+         */
+        private final Tiers userAuthorities = new Tiers();
+
+        public String getDiskDirectory() {
+            return diskDirectory;
+        }
+
+        public void setDiskDirectory(String diskDirectory) {
+            this.diskDirectory = diskDirectory;
+        }
+
+        public Tiers getUsers() {
+            return users;
+        }
+
+        public Tiers getUsersIndexes() {
+            return usersIndexes;
+        }
+
+        public Tiers getUser() {
+            return user;
+        }
+
+        public Tiers getAuthority() {
+            return authority;
+        }
+
+        public Tiers getUserAuthorities() {
+            return userAuthorities;
+        }
+
+        public static class Tiers {
+
+            /**
+             * Number of entries kept on the heap, by default jhipster.cache.ehcache.max-entries.
+             */
+            private Long maxEntries;
+
+            /**
+             * Time to live of the entries, by default jhipster.cache.ehcache.time-to-live-seconds.
+             */
+            private Integer timeToLiveSeconds;
+
+            /**
+             * Size in MB of the off-heap tier, 0 to disable it.
+             */
+            private long offheapSize = 0;
+
+            /**
+             * Size in MB of the disk tier, which must be larger than the off-heap tier, 0 to disable it.
+             */
+            private long diskSize = 0;
+
+            public Long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(Long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public Integer getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Integer timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public long getOffheapSize() {
+                return offheapSize;
+            }
+
+            public void setOffheapSize(long offheapSize) {
+                this.offheapSize = offheapSize;
+            }
+
+            public long getDiskSize() {
+                return diskSize;
+            }
+
+            public void setDiskSize(long diskSize) {
+                this.diskSize = diskSize;
+            }
+        }
+    }
 }
@@ -3,44 +3,157 @@ package com.mycompany.myapp.config;
 import io.github.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
 import io.github.jhipster.config.JHipsterProperties;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.*;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Configuration of the executors running the background work.
+ * <p>
+ * Each workload has its own executor, selected with @Async("[name]TaskExecutor") or injected by name, so that a
+ * backlog in one of them doesn't delay the others. The taskExecutor runs the other @Async methods. The loops of the
+ * MailDispatcher and of the AuditEventWriter, which run as long as the application, have a dedicated thread each,
+ * rather than taking a thread of the mail and audit executors.
+ * <p>
+ * The queue depth, active and pool threads, time spent in the queue and rejected tasks of each executor are
+ * recorded into the MetricRegistry, under async.[name].
+ */
 @Configuration
 @EnableAsync
 @EnableScheduling
 public class AsyncConfiguration implements AsyncConfigurer {
 
+    private static final String PROP_METRIC_REG_ASYNC = "async";
+
     private final Logger log = LoggerFactory.getLogger(AsyncConfiguration.class);
 
     private final JHipsterProperties jHipsterProperties;
 
-    public AsyncConfiguration(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final MetricRegistry metricRegistry;
+
+    public AsyncConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                              MetricRegistry metricRegistry) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.metricRegistry = metricRegistry;
     }
 
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
         log.debug("Creating Async Task Executor");
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(jHipsterProperties.getAsync().getCorePoolSize());
-        executor.setMaxPoolSize(jHipsterProperties.getAsync().getMaxPoolSize());
-        executor.setQueueCapacity(jHipsterProperties.getAsync().getQueueCapacity());
-        executor.setThreadNamePrefix("agatha-Executor-");
-        return new ExceptionHandlingAsyncTaskExecutor(executor);
+        return newTaskExecutor("default", new ApplicationProperties.Async.Executor(
+            jHipsterProperties.getAsync().getCorePoolSize(), jHipsterProperties.getAsync().getMaxPoolSize(),
+            jHipsterProperties.getAsync().getQueueCapacity(), ApplicationProperties.Async.Executor.RejectionPolicy.ABORT));
+    }
+
+    @Bean(name = "mailTaskExecutor")
+    public AsyncTaskExecutor mailTaskExecutor() {
+        return newTaskExecutor("mail", applicationProperties.getAsync().getMail());
+    }
+
+    /**
+     * Runs the polling loop of the MailDispatcher, on a thread of its own.
+     */
+    @Bean(name = "mailDispatcherTaskExecutor")
+    public TaskExecutor mailDispatcherTaskExecutor() {
+        return new SimpleAsyncTaskExecutor("agatha-mail-dispatcher-");
+    }
+
+    @Bean(name = "liquibaseTaskExecutor")
+    public AsyncTaskExecutor liquibaseTaskExecutor() {
+        return newTaskExecutor("liquibase", applicationProperties.getAsync().getLiquibase());
+    }
+
+    @Bean(name = "auditTaskExecutor")
+    public AsyncTaskExecutor auditTaskExecutor() {
+        return newTaskExecutor("audit", applicationProperties.getAsync().getAudit());
+    }
+
+    /**
+     * Runs the draining loop of the asynchronous AuditEventWriter, on a thread of its own.
+     */
+    @Bean(name = "auditWriterTaskExecutor")
+    public TaskExecutor auditWriterTaskExecutor() {
+        return new SimpleAsyncTaskExecutor("agatha-audit-writer-");
+    }
+
+    @Bean(name = "cacheTaskExecutor")
+    public AsyncTaskExecutor cacheTaskExecutor() {
+        return newTaskExecutor("cache", applicationProperties.getAsync().getCache());
+    }
+
+    @Bean(name = "healthTaskExecutor")
+    public AsyncTaskExecutor healthTaskExecutor() {
+        return newTaskExecutor("health", applicationProperties.getAsync().getHealth());
     }
 
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
     }
+
+    private AsyncTaskExecutor newTaskExecutor(String name, ApplicationProperties.Async.Executor properties) {
+        log.debug("Creating the {} Task Executor with {} to {} threads and a queue of {}", name,
+            properties.getCorePoolSize(), properties.getMaxPoolSize(), properties.getQueueCapacity());
+        String metricName = MetricRegistry.name(PROP_METRIC_REG_ASYNC, name);
+        Timer latency = metricRegistry.timer(MetricRegistry.name(metricName, "latency"));
+        Meter rejected = metricRegistry.meter(MetricRegistry.name(metricName, "rejected"));
+        RejectedExecutionHandler rejectionPolicy = rejectionPolicy(properties.getRejectionPolicy());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(properties.getMaxPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("agatha-" + name + "-");
+        executor.setRejectedExecutionHandler((runnable, threadPoolExecutor) -> {
+            rejected.mark();
+            rejectionPolicy.rejectedExecution(runnable, threadPoolExecutor);
+        });
+        // Measure the time spent in the queue
+        executor.setTaskDecorator(runnable -> {
+            long submitted = System.nanoTime();
+            return () -> {
+                latency.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                runnable.run();
+            };
+        });
+        metricRegistry.register(MetricRegistry.name(metricName, "queue-depth"),
+            (Gauge<Integer>) () -> executor.getThreadPoolExecutor().getQueue().size());
+        metricRegistry.register(MetricRegistry.name(metricName, "active"), (Gauge<Integer>) executor::getActiveCount);
+        metricRegistry.register(MetricRegistry.name(metricName, "pool-size"), (Gauge<Integer>) executor::getPoolSize);
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
+    private static RejectedExecutionHandler rejectionPolicy(ApplicationProperties.Async.Executor.RejectionPolicy rejectionPolicy) {
+        switch (rejectionPolicy) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
 }
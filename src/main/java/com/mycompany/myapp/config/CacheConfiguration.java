@@ -1,47 +1,125 @@
 package com.mycompany.myapp.config;
 
+import com.mycompany.myapp.config.cache.CacheSerializer;
+import com.mycompany.myapp.service.UserCache;
+
 import io.github.jhipster.config.JHipsterProperties;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
 import org.ehcache.expiry.Duration;
 import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.config.persistence.DefaultPersistenceConfiguration;
 import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
 
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
-import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.*;
 
+/**
+ * Configuration of the Ehcache caches, used through JCache by Spring and the Hibernate second level cache.
+ * <p>
+ * Each cache keeps jhipster.cache.ehcache.max-entries entries on the heap, and can spill over to an off-heap tier and
+ * a disk tier configured in application.cache, so that a large cache doesn't weigh on the garbage collection. The
+ * entries of these tiers are stored with the CacheSerializer. The off-heap tiers are allocated up front, as direct
+ * memory: -XX:MaxDirectMemorySize must leave room for their sum on top of the buffers of the gRPC server.
+ * <p>
+ * The JCache statistics of the caches are enabled, and reported by the JCacheGaugeSet of the MetricsConfiguration.
+ */
 @Configuration
 @EnableCaching
 @AutoConfigureAfter(value = { MetricsConfiguration.class })
 @AutoConfigureBefore(value = { WebConfigurer.class, DatabaseConfiguration.class })
 public class CacheConfiguration {
 
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    private final Logger log = LoggerFactory.getLogger(CacheConfiguration.class);
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache =
-            jHipsterProperties.getCache().getEhcache();
+    private final JHipsterProperties.Cache.Ehcache ehcache;
 
-        jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
-            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
-                ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                .withExpiry(Expirations.timeToLiveExpiration(Duration.of(ehcache.getTimeToLiveSeconds(), TimeUnit.SECONDS)))
-                .build());
+    private final ApplicationProperties.Cache cache;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        this.ehcache = jHipsterProperties.getCache().getEhcache();
+        this.cache = applicationProperties.getCache();
     }
 
+    /**
+     * The default cache manager of the Ehcache JCache provider, which is also the one of the Hibernate second level
+     * cache. It is created here rather than by Spring Boot to configure the directory of the disk tiers.
+     */
     @Bean
-    public JCacheManagerCustomizer cacheManagerCustomizer() {
-        return cm -> {
-            cm.createCache("users", jcacheConfiguration);
-            cm.createCache(com.mycompany.myapp.domain.User.class.getName(), jcacheConfiguration);
-            cm.createCache(com.mycompany.myapp.domain.Authority.class.getName(), jcacheConfiguration);
-            cm.createCache(com.mycompany.myapp.domain.User.class.getName() + ".authorities", jcacheConfiguration);
-            // jhipster-needle-ehcache-add-entry
-        };
+    public CacheManager jCacheCacheManager() {
+        EhcacheCachingProvider cachingProvider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        return createCacheManager(cachingProvider, cachingProvider.getDefaultURI());
+    }
+
+    /**
+     * @return the cache manager of the given URI, with the caches of the application
+     */
+    CacheManager createCacheManager(EhcacheCachingProvider cachingProvider, URI uri) {
+        ClassLoader classLoader = cachingProvider.getDefaultClassLoader();
+        boolean disk = Arrays.asList(cache.getUsers(), cache.getUsersIndexes(), cache.getUser(), cache.getAuthority(), cache.getUserAuthorities())
+            .stream().anyMatch(tiers -> tiers.getDiskSize() > 0);
+        DefaultConfiguration configuration = disk ?
+            new DefaultConfiguration(classLoader, new DefaultPersistenceConfiguration(new File(cache.getDiskDirectory()))) :
+            new DefaultConfiguration(classLoader);
+        CacheManager cm = cachingProvider.getCacheManager(uri, configuration);
+
+        createCache(cm, UserCache.USERS_CACHE, cache.getUsers());
+        createCache(cm, UserCache.USERS_BY_EMAIL_CACHE, cache.getUsersIndexes());
+        createCache(cm, UserCache.USERS_BY_ID_CACHE, cache.getUsersIndexes());
+        createCache(cm, com.mycompany.myapp.domain.User.class.getName(), cache.getUser());
+        createCache(cm, com.mycompany.myapp.domain.Authority.class.getName(), cache.getAuthority());
+        createCache(cm, com.mycompany.myapp.domain.User.class.getName() + ".authorities", cache.getUserAuthorities());
+        // jhipster-needle-ehcache-add-entry
+        return cm;
+    }
+
+    void createCache(CacheManager cm, String cacheName, ApplicationProperties.Cache.Tiers tiers) {
+        // The cache manager is shared by the application contexts of a class loader, like in the tests
+        if (cm.getCache(cacheName) == null) {
+            cm.createCache(cacheName, jcacheConfiguration(cacheName, cm.getClassLoader(), tiers));
+        }
+        cm.enableStatistics(cacheName, true);
+    }
+
+    private javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration(
+        String cacheName, ClassLoader classLoader, ApplicationProperties.Cache.Tiers tiers) {
+
+        long maxEntries = tiers.getMaxEntries() != null ? tiers.getMaxEntries() : ehcache.getMaxEntries();
+        int timeToLiveSeconds = tiers.getTimeToLiveSeconds() != null ?
+            tiers.getTimeToLiveSeconds() : ehcache.getTimeToLiveSeconds();
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder()
+            .heap(maxEntries, EntryUnit.ENTRIES);
+        if (tiers.getOffheapSize() > 0) {
+            resourcePools = resourcePools.offheap(tiers.getOffheapSize(), MemoryUnit.MB);
+        }
+        if (tiers.getDiskSize() > 0) {
+            resourcePools = resourcePools.disk(tiers.getDiskSize(), MemoryUnit.MB, false);
+        }
+        log.debug("Creating the {} cache with {} entries on heap, {} MB off-heap and {} MB on disk, living {} seconds",
+            cacheName, maxEntries, tiers.getOffheapSize(), tiers.getDiskSize(), timeToLiveSeconds);
+
+        CacheSerializer serializer = new CacheSerializer(classLoader);
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools)
+                .withKeySerializer(serializer)
+                .withValueSerializer(serializer)
+                .withExpiry(Expirations.timeToLiveExpiration(Duration.of(timeToLiveSeconds, TimeUnit.SECONDS)))
+                .build());
     }
 }
@@ -12,6 +12,9 @@ public final class Constants {
     public static final String ANONYMOUS_USER = "anonymoususer";
     public static final String DEFAULT_LANGUAGE = "en";
 
+    // Spring profile storing the audit events in a local segment log instead of the database
+    public static final String SPRING_PROFILE_AUDIT_LOG = "audit-log";
+
     private Constants() {
     }
 }
@@ -0,0 +1,98 @@
+package com.mycompany.myapp.config;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.zaxxer.hikari.HikariDataSource;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the scheduler running the blocking work (database, password hashing, mail templating...)
+ * of the gRPC services, so that it doesn't run on the gRPC transport threads.
+ */
+@Configuration
+public class GrpcConfiguration {
+
+    private static final String PROP_METRIC_REG_GRPC_SCHEDULER = "grpc.scheduler";
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final Logger log = LoggerFactory.getLogger(GrpcConfiguration.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final MetricRegistry metricRegistry;
+
+    private HikariDataSource hikariDataSource;
+
+    public GrpcConfiguration(ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Autowired(required = false)
+    public void setHikariDataSource(HikariDataSource hikariDataSource) {
+        this.hikariDataSource = hikariDataSource;
+    }
+
+    @Bean(name = "grpcTaskExecutor")
+    public ThreadPoolTaskExecutor grpcTaskExecutor() {
+        ApplicationProperties.Grpc.Scheduler properties = applicationProperties.getGrpc().getScheduler();
+        int poolSize = properties.getPoolSize();
+        if (poolSize < 1) {
+            // More threads than database connections would only wait for a connection
+            poolSize = hikariDataSource != null ? hikariDataSource.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+        }
+        log.debug("Creating gRPC Task Executor with {} threads", poolSize);
+
+        Timer waitTimer = metricRegistry.timer(MetricRegistry.name(PROP_METRIC_REG_GRPC_SCHEDULER, "wait"));
+        Meter callerRunsMeter = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_GRPC_SCHEDULER, "caller-runs"));
+        ThreadPoolExecutor.CallerRunsPolicy callerRunsPolicy = new ThreadPoolExecutor.CallerRunsPolicy();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("agatha-grpc-");
+        // When the queue is full, the gRPC transport thread runs the task itself, which slows down the intake
+        executor.setRejectedExecutionHandler((runnable, threadPoolExecutor) -> {
+            callerRunsMeter.mark();
+            callerRunsPolicy.rejectedExecution(runnable, threadPoolExecutor);
+        });
+        // Propagate the security context set by the AuthenticationInterceptor, and measure the time spent in the queue
+        executor.setTaskDecorator(runnable -> {
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+            long submitted = System.nanoTime();
+            Runnable delegate = new DelegatingSecurityContextRunnable(runnable, securityContext);
+            return () -> {
+                waitTimer.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                delegate.run();
+            };
+        });
+        return executor;
+    }
+
+    @Bean
+    public Scheduler grpcScheduler(@Qualifier("grpcTaskExecutor") ThreadPoolTaskExecutor grpcTaskExecutor) {
+        metricRegistry.register(MetricRegistry.name(PROP_METRIC_REG_GRPC_SCHEDULER, "queue-depth"),
+            (Gauge<Integer>) () -> grpcTaskExecutor.getThreadPoolExecutor().getQueue().size());
+        metricRegistry.register(MetricRegistry.name(PROP_METRIC_REG_GRPC_SCHEDULER, "active"),
+            (Gauge<Integer>) grpcTaskExecutor::getActiveCount);
+        return Schedulers.from(grpcTaskExecutor);
+    }
+}
@@ -0,0 +1,210 @@
+package com.mycompany.myapp.config.cache;
+
+import com.mycompany.myapp.domain.Authority;
+import com.mycompany.myapp.domain.User;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Serializer of the keys and values stored in the off-heap and disk tiers of the caches.
+ * <p>
+ * The User and Authority, as well as the String and Long keys, are written field by field: a cached user takes a few
+ * hundred bytes, where the Java serialization would also write the class descriptors of User, AbstractAuditingEntity
+ * and the Hibernate collection of its authorities. The other objects, like the Hibernate second level cache entries,
+ * are Java serialized.
+ * <p>
+ * A deserialized user is detached, with its authorities in a HashSet.
+ */
+public class CacheSerializer implements Serializer<Object> {
+
+    private static final byte JAVA = 0;
+
+    private static final byte STRING = 1;
+
+    private static final byte LONG = 2;
+
+    private static final byte USER = 3;
+
+    private static final byte AUTHORITY = 4;
+
+    private final ClassLoader classLoader;
+
+    public CacheSerializer(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public ByteBuffer serialize(Object object) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (object instanceof String) {
+                out.writeByte(STRING);
+                out.writeUTF((String) object);
+            } else if (object instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) object);
+            } else if (object.getClass() == User.class) {
+                out.writeByte(USER);
+                writeUser(out, (User) object);
+            } else if (object.getClass() == Authority.class) {
+                out.writeByte(AUTHORITY);
+                out.writeUTF(((Authority) object).getName());
+            } else {
+                out.writeByte(JAVA);
+                ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                objectOut.writeObject(object);
+                objectOut.flush();
+            }
+        } catch (IOException e) {
+            throw new SerializerException("Could not serialize " + object.getClass().getName(), e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Override
+    public Object read(ByteBuffer binary) throws ClassNotFoundException {
+        byte[] bytes = new byte[binary.remaining()];
+        binary.get(bytes);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte type = in.readByte();
+            switch (type) {
+                case STRING:
+                    return in.readUTF();
+                case LONG:
+                    return in.readLong();
+                case USER:
+                    return readUser(in);
+                case AUTHORITY:
+                    return authority(in.readUTF());
+                case JAVA:
+                    return new ClassLoaderObjectInputStream(in, classLoader).readObject();
+                default:
+                    throw new SerializerException("Unknown serialized type " + type);
+            }
+        } catch (IOException e) {
+            throw new SerializerException("Could not deserialize", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object object, ByteBuffer binary) throws ClassNotFoundException {
+        return object.equals(read(binary));
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        writeLong(out, user.getId());
+        writeString(out, user.getLogin());
+        writeString(out, user.getPassword());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+        writeString(out, user.getEmail());
+        out.writeBoolean(user.getActivated());
+        writeString(out, user.getLangKey());
+        writeString(out, user.getImageUrl());
+        writeString(out, user.getActivationKey());
+        writeString(out, user.getResetKey());
+        writeInstant(out, user.getResetDate());
+        writeString(out, user.getCreatedBy());
+        writeInstant(out, user.getCreatedDate());
+        writeString(out, user.getLastModifiedBy());
+        writeInstant(out, user.getLastModifiedDate());
+        Set<Authority> authorities = user.getAuthorities();
+        out.writeInt(authorities.size());
+        for (Authority authority : authorities) {
+            out.writeUTF(authority.getName());
+        }
+    }
+
+    private static User readUser(DataInputStream in) throws IOException {
+        User user = new User();
+        user.setId(readLong(in));
+        user.setLogin(readString(in));
+        user.setPassword(readString(in));
+        user.setFirstName(readString(in));
+        user.setLastName(readString(in));
+        user.setEmail(readString(in));
+        user.setActivated(in.readBoolean());
+        user.setLangKey(readString(in));
+        user.setImageUrl(readString(in));
+        user.setActivationKey(readString(in));
+        user.setResetKey(readString(in));
+        user.setResetDate(readInstant(in));
+        user.setCreatedBy(readString(in));
+        user.setCreatedDate(readInstant(in));
+        user.setLastModifiedBy(readString(in));
+        user.setLastModifiedDate(readInstant(in));
+        int size = in.readInt();
+        Set<Authority> authorities = new HashSet<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            authorities.add(authority(in.readUTF()));
+        }
+        user.setAuthorities(authorities);
+        return user;
+    }
+
+    private static Authority authority(String name) {
+        Authority authority = new Authority();
+        authority.setName(name);
+        return authority;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
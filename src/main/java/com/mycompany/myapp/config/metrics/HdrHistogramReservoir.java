@@ -0,0 +1,151 @@
+package com.mycompany.myapp.config.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * A Dropwizard reservoir recording the values into an HdrHistogram.
+ * <p>
+ * Unlike the default ExponentiallyDecayingReservoir, an update doesn't allocate nor take a lock: the values are
+ * recorded into the fixed-size buckets of a Recorder, which are only merged when a snapshot is taken. Like the
+ * SlidingTimeWindowReservoir, the snapshots cover the values recorded during the last window, one minute by default,
+ * with 2 significant digits. The window slides by a sixth of its length: the values are kept in one histogram per
+ * sixth, and the values recorded since the previous snapshot are counted in the sixth of the current snapshot.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private static final int SIGNIFICANT_VALUE_DIGITS = 2;
+
+    private static final int CHUNK_COUNT = 6;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_VALUE_DIGITS);
+
+    private final Clock clock;
+
+    private final long chunkDuration;
+
+    /**
+     * The histograms of the sixths of the window, the one of a tick being at the tick modulo CHUNK_COUNT. The ticks of
+     * System.nanoTime() may be negative, so the modulo is floored.
+     */
+    private final Histogram[] chunks = new Histogram[CHUNK_COUNT];
+
+    private long lastTick;
+
+    private Histogram interval;
+
+    public HdrHistogramReservoir() {
+        this(1, TimeUnit.MINUTES, Clock.defaultClock());
+    }
+
+    public HdrHistogramReservoir(long window, TimeUnit windowUnit, Clock clock) {
+        this.clock = clock;
+        this.chunkDuration = Math.max(1, windowUnit.toNanos(window) / CHUNK_COUNT);
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            chunks[i] = new Histogram(SIGNIFICANT_VALUE_DIGITS);
+        }
+        this.lastTick = tick();
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        recorder.recordValue(value);
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        long tick = tick();
+        // Reset the sixths which slid out of the window since the previous snapshot
+        for (long expired = Math.max(lastTick + 1, tick - CHUNK_COUNT + 1); expired <= tick; expired++) {
+            chunks[(int) Math.floorMod(expired, CHUNK_COUNT)].reset();
+        }
+        lastTick = tick;
+        interval = recorder.getIntervalHistogram(interval);
+        chunks[(int) Math.floorMod(tick, CHUNK_COUNT)].add(interval);
+        Histogram window = new Histogram(SIGNIFICANT_VALUE_DIGITS);
+        for (Histogram chunk : chunks) {
+            window.add(chunk);
+        }
+        return new HdrHistogramSnapshot(window);
+    }
+
+    private long tick() {
+        return Math.floorDiv(clock.getTick(), chunkDuration);
+    }
+
+    private static class HdrHistogramSnapshot extends Snapshot {
+
+        private final Histogram histogram;
+
+        HdrHistogramSnapshot(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return histogram.getValueAtPercentile(quantile * 100.0);
+        }
+
+        /**
+         * @return the distinct recorded values, each one only once whatever its count
+         */
+        @Override
+        public long[] getValues() {
+            LongStream.Builder values = LongStream.builder();
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                values.add(value.getValueIteratedTo());
+            }
+            return values.build().toArray();
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (HistogramIterationValue value : histogram.recordedValues()) {
+                    out.printf("%d%n", value.getValueIteratedTo());
+                }
+            }
+        }
+    }
+}
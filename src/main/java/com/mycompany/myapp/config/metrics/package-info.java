@@ -0,0 +1,4 @@
+/**
+ * Metrics specific code.
+ */
+package com.mycompany.myapp.config.metrics;
@@ -1,5 +1,7 @@
 package com.mycompany.myapp.domain;
 
+import org.hibernate.annotations.BatchSize;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -15,8 +17,11 @@ import java.util.Map;
 @Table(name = "jhi_persistent_audit_event")
 public class PersistentAuditEvent implements Serializable {
 
+    // A pooled sequence, unlike an identity column, lets Hibernate batch the inserts of the AuditEventWriter
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auditEventSequenceGenerator")
+    @SequenceGenerator(name = "auditEventSequenceGenerator", sequenceName = "jhi_persistent_audit_event_sequence",
+        allocationSize = 50)
     @Column(name = "event_id")
     private Long id;
 
@@ -29,7 +34,9 @@ public class PersistentAuditEvent implements Serializable {
     @Column(name = "event_type")
     private String auditEventType;
 
+    // Loads the data of up to 100 events in a single select, when they are converted after a finder
     @ElementCollection
+    @BatchSize(size = 100)
     @MapKeyColumn(name = "name")
     @Column(name = "value")
     @CollectionTable(name = "jhi_persistent_audit_evt_data", joinColumns=@JoinColumn(name="event_id"))
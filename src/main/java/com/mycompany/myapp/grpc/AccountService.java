@@ -1,9 +1,8 @@
 package com.mycompany.myapp.grpc;
 
-import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.repository.UserLoginAndEmail;
 import com.mycompany.myapp.repository.UserRepository;
 import com.mycompany.myapp.security.SecurityUtils;
-import com.mycompany.myapp.service.MailService;
 import com.mycompany.myapp.service.UserService;
 import com.mycompany.myapp.service.dto.UserDTO;
 import com.mycompany.myapp.web.rest.vm.ManagedUserVM;
@@ -11,16 +10,19 @@ import com.mycompany.myapp.web.rest.vm.ManagedUserVM;
 import com.google.protobuf.Empty;
 import com.google.protobuf.StringValue;
 import io.grpc.Status;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import org.apache.commons.lang3.StringUtils;
 import org.lognet.springboot.grpc.GRpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.TransactionSystemException;
 
 import javax.validation.ConstraintViolationException;
+import java.util.List;
 import java.util.Optional;
 
 @GRpcService
@@ -32,15 +34,16 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
 
     private final UserService userService;
 
-    private final MailService mailService;
-
     private final UserProtoMapper userProtoMapper;
 
-    public AccountService(UserRepository userRepository, UserService userService, MailService mailService, UserProtoMapper userProtoMapper) {
+    private final Scheduler scheduler;
+
+    public AccountService(UserRepository userRepository, UserService userService, UserProtoMapper userProtoMapper,
+                          Scheduler scheduler) {
         this.userRepository = userRepository;
         this.userService = userService;
-        this.mailService = mailService;
         this.userProtoMapper = userProtoMapper;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -49,25 +52,34 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
             .doOnSuccess(userProto -> log.debug("gRPC request to register account {}", userProto.getLogin()))
             .filter(userProto -> checkPasswordLength(userProto.getPassword()))
             .switchIfEmpty(Single.error(Status.INVALID_ARGUMENT.withDescription("Incorrect password").asException()))
-            .filter(userProto -> !userRepository.findOneByLogin(userProto.getLogin().toLowerCase()).isPresent())
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Login already in use").asException()))
-            .filter(userProto -> !userRepository.findOneByEmailIgnoreCase(userProto.getEmail()).isPresent())
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Email already in use").asException()))
-            .map(userProto -> new ManagedUserVM(
-                null,
-                userProto.getLogin().isEmpty() ? null : userProto.getLogin(),
-                userProto.getPassword().isEmpty() ? null : userProto.getPassword(),
-                userProto.getFirstName().isEmpty() ? null : userProto.getFirstName(),
-                userProto.getLastName().isEmpty() ? null : userProto.getLastName(),
-                userProto.getEmail().isEmpty() ? null : userProto.getEmail().toLowerCase(),
-                false,
-                userProto.getImageUrl().isEmpty() ? null : userProto.getImageUrl(),
-                userProto.getLangKey().isEmpty() ? null : userProto.getLangKey(),
-                null, null, null, null, null
-            ))
+            .doOnSuccess(userProto -> {
+                List<UserLoginAndEmail> holders = userRepository
+                    .findAllLoginAndEmailByLoginOrEmail(userProto.getLogin().toLowerCase(), userProto.getEmail());
+                if (holders.stream().anyMatch(holder -> holder.getLogin().equalsIgnoreCase(userProto.getLogin()))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Login already in use").asException();
+                }
+                if (holders.stream().anyMatch(holder -> userProto.getEmail().equalsIgnoreCase(holder.getEmail()))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Email already in use").asException();
+                }
+            })
+            .map(userProto -> {
+                ManagedUserVM user = new ManagedUserVM();
+                user.setLogin(userProto.getLogin().isEmpty() ? null : userProto.getLogin());
+                user.setPassword(userProto.getPassword().isEmpty() ? null : userProto.getPassword());
+                user.setFirstName(userProto.getFirstName().isEmpty() ? null : userProto.getFirstName());
+                user.setLastName(userProto.getLastName().isEmpty() ? null : userProto.getLastName());
+                user.setEmail(userProto.getEmail().isEmpty() ? null : userProto.getEmail().toLowerCase());
+                user.setImageUrl(userProto.getImageUrl().isEmpty() ? null : userProto.getImageUrl());
+                user.setLangKey(userProto.getLangKey().isEmpty() ? null : userProto.getLangKey());
+                return user;
+            })
             .map(user -> {
                 try {
                     return userService.registerUser(user);
+                } catch (DataIntegrityViolationException e) {
+                    // Another request took the login or the email since they were checked
+                    log.info("Login or email already in use", e);
+                    throw Status.ALREADY_EXISTS.withDescription("Login or email already in use").asException();
                 } catch (TransactionSystemException e) {
                     if (e.getOriginalException().getCause() instanceof ConstraintViolationException) {
                         log.info("Invalid user", e);
@@ -80,8 +92,8 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
                     throw Status.INVALID_ARGUMENT.withDescription("Invalid user").asException();
                 }
             })
-            .doOnSuccess(mailService::sendCreationEmail)
-            .map(u -> Empty.newBuilder().build());
+            .map(u -> Empty.newBuilder().build())
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -89,7 +101,8 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
         return request
             .map(StringValue::getValue)
             .map(key -> userService.activateRegistration(key).orElseThrow(Status.INTERNAL::asException))
-            .map(userProtoMapper::userToUserProto);
+            .map(userProtoMapper::userToUserProto)
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -110,20 +123,24 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
         return request
             .map(e -> Optional.ofNullable(userService.getUserWithAuthorities()).orElseThrow(Status.INTERNAL::asException))
             .map(UserDTO::new)
-            .map(userProtoMapper::userDTOToUserProto);
+            .map(userProtoMapper::userDTOToUserProto)
+            .subscribeOn(scheduler);
     }
 
     @Override
     public Single<Empty> saveAccount(Single<UserProto> request) {
         return request
-            .filter(user -> !userRepository.findOneByEmailIgnoreCase(user.getEmail())
-                .map(User::getLogin)
-                .map(login -> !login.equalsIgnoreCase(SecurityUtils.getCurrentUserLogin()))
-                .isPresent()
-            )
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Email already in use").asException()))
-            .filter(user -> userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).isPresent())
-            .switchIfEmpty(Single.error(Status.INTERNAL.asException()))
+            .doOnSuccess(user -> {
+                String currentLogin = SecurityUtils.getCurrentUserLogin();
+                List<UserLoginAndEmail> holders = userRepository.findAllLoginAndEmailByLoginOrEmail(currentLogin, user.getEmail());
+                if (holders.stream().anyMatch(holder -> user.getEmail().equalsIgnoreCase(holder.getEmail())
+                    && !holder.getLogin().equalsIgnoreCase(currentLogin))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Email already in use").asException();
+                }
+                if (holders.stream().noneMatch(holder -> holder.getLogin().equals(currentLogin))) {
+                    throw Status.INTERNAL.asException();
+                }
+            })
             .doOnSuccess(user -> {
                 try {
                     userService.updateUser(
@@ -133,6 +150,10 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
                         user.getLangKey().isEmpty() ? null : user.getLangKey(),
                         user.getImageUrl().isEmpty() ? null : user.getImageUrl()
                     );
+                } catch (DataIntegrityViolationException e) {
+                    // Another request took the email since it was checked
+                    log.info("Email already in use", e);
+                    throw Status.ALREADY_EXISTS.withDescription("Email already in use").asRuntimeException();
                 } catch (TransactionSystemException e) {
                     if (e.getOriginalException().getCause() instanceof ConstraintViolationException) {
                         log.info("Invalid user", e);
@@ -145,7 +166,8 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
                     throw Status.INVALID_ARGUMENT.withDescription("Invalid user").asRuntimeException();
                 }
             })
-            .map(u -> Empty.newBuilder().build());
+            .map(u -> Empty.newBuilder().build())
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -155,7 +177,8 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
             .filter(AccountService::checkPasswordLength)
             .switchIfEmpty(Single.error(Status.INVALID_ARGUMENT.withDescription("Incorrect password").asException()))
             .doOnSuccess(userService::changePassword)
-            .map(p -> Empty.newBuilder().build());
+            .map(p -> Empty.newBuilder().build())
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -165,8 +188,8 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
             .map(mail -> userService.requestPasswordReset(mail)
                 .orElseThrow(Status.INVALID_ARGUMENT.withDescription("e-mail address not registered")::asException)
             )
-            .doOnSuccess(mailService::sendPasswordResetMail)
-            .map(u -> Empty.newBuilder().build());
+            .map(u -> Empty.newBuilder().build())
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -178,8 +201,8 @@ public class AccountService extends RxAccountServiceGrpc.AccountServiceImplBase
                 .completePasswordReset(keyAndPassword.getNewPassword(), keyAndPassword.getKey())
                 .orElseThrow(Status.INTERNAL::asException)
             )
-            .doOnSuccess(mailService::sendPasswordResetMail)
-            .map(user -> Empty.newBuilder().build());
+            .map(user -> Empty.newBuilder().build())
+            .subscribeOn(scheduler);
     }
 
     private static boolean checkPasswordLength(String password) {
@@ -1,65 +1,138 @@
 package com.mycompany.myapp.grpc;
 
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import com.mycompany.myapp.repository.AuditEventBroadcaster;
+import com.mycompany.myapp.repository.EntityCursor;
+import com.mycompany.myapp.repository.PersistenceAuditEventRepository;
+import com.mycompany.myapp.repository.SegmentLogAuditEventRepository;
+import com.mycompany.myapp.security.AuthoritiesConstants;
+import com.mycompany.myapp.security.SecurityUtils;
 import com.mycompany.myapp.service.AuditEventService;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.protobuf.Int64Value;
 import io.grpc.Status;
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
+import io.reactivex.functions.Predicate;
+import org.lognet.springboot.grpc.GRpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.time.Instant;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 
+@GRpcService(interceptors = {AuthenticationInterceptor.class})
 public class AuditGrpcService extends RxAuditServiceGrpc.AuditServiceImplBase {
 
+    /**
+     * All the stored events of a subscription replay, in the order they were recorded.
+     */
+    private static final Pageable REPLAY_PAGE = new PageRequest(0, Integer.MAX_VALUE, Sort.Direction.ASC, "auditEventDate", "id");
+
     private final Logger log = LoggerFactory.getLogger(AuditGrpcService.class);
 
     private final AuditEventService auditEventService;
 
-    public AuditGrpcService(AuditEventService auditEventService) {
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final Optional<SegmentLogAuditEventRepository> segmentLogAuditEventRepository;
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
+    private final long subscriptionOverlap;
+
+    private final Scheduler scheduler;
+
+    public AuditGrpcService(AuditEventService auditEventService, PersistenceAuditEventRepository persistenceAuditEventRepository,
+                            Optional<SegmentLogAuditEventRepository> segmentLogAuditEventRepository,
+                            AuditEventBroadcaster auditEventBroadcaster, ApplicationProperties applicationProperties,
+                            Scheduler scheduler) {
         this.auditEventService = auditEventService;
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.segmentLogAuditEventRepository = segmentLogAuditEventRepository;
+        this.auditEventBroadcaster = auditEventBroadcaster;
+        this.subscriptionOverlap = applicationProperties.getAudit().getSubscriptionOverlap();
+        this.scheduler = scheduler;
     }
 
     @Override
     public Flowable<AuditEvent> getAuditEvents(Single<AuditRequest> request) {
         return request
-            .map( auditRequest -> {
-                if (auditRequest.hasFromDate() || auditRequest.hasToDate()) {
-                    Instant fromDate = auditRequest.hasFromDate() ?
-                        ProtobufMappers
-                            .dateProtoToLocalDate(auditRequest.getFromDate())
-                            .atStartOfDay(ZoneId.systemDefault())
-                            .toInstant()
-                        : null;
-                    Instant toDate = auditRequest.hasToDate() ?
-                        ProtobufMappers
-                            .dateProtoToLocalDate(auditRequest.getToDate())
-                            .atStartOfDay(ZoneId.systemDefault())
-                            .plusDays(1)
-                            .toInstant()
-                        : null;
-                    return auditEventService.findByDates(fromDate, toDate, ProtobufMappers.pageRequestProtoToPageRequest(auditRequest.getPaginationParams()));
-                } else {
-                    return auditEventService.findAll(ProtobufMappers.pageRequestProtoToPageRequest(auditRequest.getPaginationParams()));
-                }
+            .filter(r -> SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN))
+            .switchIfEmpty(Single.error(Status.PERMISSION_DENIED.asException()))
+            .flatMapPublisher(auditRequest -> {
+                boolean omitJsonData = auditRequest.getOmitJsonData();
+                Instant fromDate = auditRequest.hasFromDate() ?
+                    ProtobufMappers
+                        .dateProtoToLocalDate(auditRequest.getFromDate())
+                        .atStartOfDay(ZoneId.systemDefault())
+                        .toInstant()
+                    : null;
+                Instant toDate = auditRequest.hasToDate() ?
+                    ProtobufMappers
+                        .dateProtoToLocalDate(auditRequest.getToDate())
+                        .atStartOfDay(ZoneId.systemDefault())
+                        .plusDays(1)
+                        .toInstant()
+                    : null;
+                Pageable pageable = ProtobufMappers.pageRequestProtoToPageRequest(auditRequest.getPaginationParams());
+                // The events are sent as they are read from the cursor, in id order unless another one is requested
+                return streamAuditEvents(fromDate, toDate, pageable)
+                    .map(auditEvent -> omitJsonData ? auditEvent : withJsonData(auditEvent));
             })
-            .flatMapPublisher(Flowable::fromIterable)
-            .map(auditEvent ->  {
-                try {
-                    return ProtobufMappers.auditEventToAuditEventProto(auditEvent);
-                } catch (JsonProcessingException e) {
-                    log.error("Couldn't parse audit event", e);
-                    throw Status.INTERNAL.withCause(e).asRuntimeException();
-                }
-            });
+            .subscribeOn(scheduler);
+    }
+
+    /**
+     * Push every audit event recorded from the subscription timestamp on, or from now when there's none.
+     * <p>
+     * The events recorded before the watermark, application.audit.subscription-overlap ago, are surely stored: they
+     * are replayed from the store. The events recorded from the watermark on are taken from the broadcaster, which
+     * replays the recent ones, so that an event still queued in the writer, or published after the subscription
+     * while recorded before it, is not missed. Each event is pushed once, from either side of the watermark.
+     */
+    @Override
+    public Flowable<AuditEvent> subscribeAuditEvents(Single<AuditSubscription> request) {
+        return request
+            .filter(r -> SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN))
+            .switchIfEmpty(Single.error(Status.PERMISSION_DENIED.asException()))
+            .flatMapPublisher(subscription -> {
+                Instant now = Instant.now();
+                // Whole seconds, as the database may store the event dates
+                Instant watermark = now.minusMillis(subscriptionOverlap).truncatedTo(ChronoUnit.SECONDS);
+                Instant from = subscription.hasFromTimestamp() ?
+                    ProtobufMappers.timestampToInstant(subscription.getFromTimestamp()) : now;
+                Instant liveFrom = from.isAfter(watermark) ? from : watermark;
+                Predicate<AuditEvent> filter = auditEvent ->
+                    (subscription.getPrincipal().isEmpty() || subscription.getPrincipal().equals(auditEvent.getPrincipal())) &&
+                    (subscription.getType().isEmpty() || subscription.getType().equals(auditEvent.getType()));
+                Flowable<AuditEvent> storedEvents = from.isBefore(watermark) ?
+                    streamAuditEvents(from, watermark.minusNanos(1), REPLAY_PAGE).filter(filter) :
+                    Flowable.empty();
+                Flowable<AuditEvent> newEvents = auditEventBroadcaster.events()
+                    .filter(auditEvent -> !auditEvent.getAuditEventDate().isBefore(liveFrom))
+                    .map(ProtobufMappers::persistentAuditEventToAuditEventProto)
+                    .filter(filter);
+                // Both are subscribed to right away, so that the events recorded during the replay are buffered
+                return Flowable.concatArrayEager(storedEvents, newEvents)
+                    .map(auditEvent -> subscription.getOmitJsonData() ? auditEvent : withJsonData(auditEvent));
+            })
+            .subscribeOn(scheduler);
     }
 
     @Override
     public Single<AuditEvent> getAuditEvent(Single<Int64Value> request) {
         return request
+            .filter(r -> SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN))
+            .switchIfEmpty(Single.error(Status.PERMISSION_DENIED.asException()))
             .map(Int64Value::getValue)
             .map(id -> auditEventService.find(id).orElseThrow(Status.NOT_FOUND::asException))
             .map(auditEvent -> {
@@ -68,7 +141,48 @@ public class AuditGrpcService extends RxAuditServiceGrpc.AuditServiceImplBase {
                 } catch (JsonProcessingException e) {
                     throw Status.INTERNAL.withCause(e).asRuntimeException();
                 }
-            });
+            })
+            .subscribeOn(scheduler);
+    }
+
+    /**
+     * Stream the stored audit events, from the segment log when it's enabled, from the database otherwise.
+     */
+    private Flowable<AuditEvent> streamAuditEvents(Instant fromDate, Instant toDate, Pageable pageable) {
+        if (segmentLogAuditEventRepository.isPresent()) {
+            // The events are stored as protobuf messages already, they are sent as they are read
+            SegmentLogAuditEventRepository segmentLog = segmentLogAuditEventRepository.get();
+            return Flowable.fromIterable(() -> segmentLog.streamAllByAuditEventDateBetween(fromDate, toDate, pageable));
+        }
+        return Flowable.<PersistentAuditEvent, EntityCursor<PersistentAuditEvent>>generate(
+            () -> persistenceAuditEventRepository.streamAllByAuditEventDateBetween(fromDate, toDate, pageable),
+            (cursor, emitter) -> {
+                if (cursor.hasNext()) {
+                    emitter.onNext(cursor.next());
+                } else {
+                    emitter.onComplete();
+                }
+            },
+            EntityCursor::close
+        ).map(ProtobufMappers::persistentAuditEventToAuditEventProto);
+    }
+
+    private AuditEvent withJsonData(AuditEvent auditEvent) {
+        try {
+            return addJsonData(auditEvent);
+        } catch (JsonProcessingException e) {
+            log.error("Couldn't parse audit event", e);
+            throw Status.INTERNAL.withCause(e).asRuntimeException();
+        }
+    }
+
+    /**
+     * @return the audit event with the deprecated JSON data string, written from its data map
+     */
+    static AuditEvent addJsonData(AuditEvent auditEvent) throws JsonProcessingException {
+        return auditEvent.toBuilder()
+            .setData(ProtobufMappers.JSON_WRITER.writeValueAsString(auditEvent.getDataMapMap()))
+            .build();
     }
 
 }
@@ -11,6 +11,8 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.Optional;
+
 @Component
 public class AuthenticationInterceptor implements ServerInterceptor {
 
@@ -32,8 +34,9 @@ public class AuthenticationInterceptor implements ServerInterceptor {
         if (StringUtils.hasText(authorizationValue) && authorizationValue.startsWith("Bearer ")) {
             String token = authorizationValue.substring(7, authorizationValue.length());
             if (StringUtils.hasText(token)) {
-                if (this.tokenProvider.validateToken(token)) {
-                    Authentication authentication = this.tokenProvider.getAuthentication(token);
+                Optional<Authentication> parsedAuthentication = this.tokenProvider.parseAuthentication(token);
+                if (parsedAuthentication.isPresent()) {
+                    Authentication authentication = parsedAuthentication.get();
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                     if (authentication.getAuthorities().stream()
                         .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals(AuthoritiesConstants.ANONYMOUS))
@@ -1,7 +1,6 @@
 package com.mycompany.myapp.grpc;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.protobuf.Empty;
 import io.reactivex.Single;
 import org.lognet.springboot.grpc.GRpcService;
@@ -28,7 +27,6 @@ public class ConfigurationPropertiesReportService extends RxConfigurationPropert
 
     private ConfigurationPropertiesReport mapToConfigurationPropertiesReport(Map<String, Object> map) {
         ConfigurationPropertiesReport.Builder builder = ConfigurationPropertiesReport.newBuilder();
-        ObjectMapper mapper = new ObjectMapper();
         map.forEach((k, v) -> {
             Map<String, Object> mapValue = (Map<String, Object>) v;
             if ("parent".equals(k)) {
@@ -36,7 +34,7 @@ public class ConfigurationPropertiesReportService extends RxConfigurationPropert
             } else {
                 String properties = "";
                 try {
-                    properties = mapper.writeValueAsString(mapValue.get("properties"));
+                    properties = ProtobufMappers.JSON_WRITER.writeValueAsString(mapValue.get("properties"));
                 } catch (JsonProcessingException e) {
                     log.error("Couldn't encode properties as JSON", e);
                 }
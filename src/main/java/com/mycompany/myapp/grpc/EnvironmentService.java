@@ -1,7 +1,6 @@
 package com.mycompany.myapp.grpc;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.protobuf.Empty;
 import io.grpc.Status;
 import io.reactivex.Single;
@@ -20,10 +19,9 @@ public class EnvironmentService extends RxEnvironmentServiceGrpc.EnvironmentServ
     @Override
     public Single<Environment> getEnv(Single<Empty> request) {
         return request.map( empty -> {
-            ObjectMapper mapper = new ObjectMapper();
             try {
                 return Environment.newBuilder()
-                    .setValue(mapper.writeValueAsString(endpoint.invoke()))
+                    .setValue(ProtobufMappers.JSON_WRITER.writeValueAsString(endpoint.invoke()))
                     .build();
             } catch (JsonProcessingException e) {
                 throw Status.INTERNAL.withCause(e).asRuntimeException();
@@ -0,0 +1,209 @@
+package com.mycompany.myapp.grpc;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.BehaviorProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.health.HealthAggregator;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks the health indicators in the background, so that the health probes are served from the last snapshot
+ * instead of running the database and disk checks on each request.
+ * <p>
+ * Every application.health.refresh-interval, each indicator is checked once, all of them in parallel on the
+ * healthTaskExecutor, so that a stalled check doesn't take a thread of the gRPC services. An indicator which doesn't
+ * answer within application.health.timeout, or can't get a thread, is reported DOWN. An indicator whose previous check
+ * is still running isn't checked again, so that a hung check holds a single thread, it is reported DOWN with the details
+ * of its last result.
+ * <p>
+ * The watchers of the health share this single refresh loop. Each refresh is published, and each watcher is only
+ * pushed the snapshots whose statuses differ from the last one it got.
+ */
+@Component
+public class HealthRefresher {
+
+    private final Logger log = LoggerFactory.getLogger(HealthRefresher.class);
+
+    private final HealthAggregator healthAggregator;
+
+    private final ApplicationProperties.Health properties;
+
+    private final TaskExecutor taskExecutor;
+
+    private final Map<String, IndicatorCheck> indicatorChecks = new HashMap<>();
+
+    private volatile Health health;
+
+    private final BehaviorProcessor<Health> healths = BehaviorProcessor.create();
+
+    private Disposable refreshes;
+
+    public HealthRefresher(HealthAggregator healthAggregator,
+                           Map<String, org.springframework.boot.actuate.health.HealthIndicator> healthIndicators,
+                           ApplicationProperties applicationProperties,
+                           @Qualifier("healthTaskExecutor") TaskExecutor taskExecutor) {
+        Assert.notNull(healthAggregator, "HealthAggregator must not be null");
+        Assert.notNull(healthIndicators, "HealthIndicators must not be null");
+        this.healthAggregator = healthAggregator;
+        this.properties = applicationProperties.getHealth();
+        this.taskExecutor = taskExecutor;
+        healthIndicators.forEach((name, healthIndicator) -> indicatorChecks.put(name, new IndicatorCheck(healthIndicator)));
+    }
+
+    @PostConstruct
+    public void start() {
+        log.debug("Checking the health indicators every {} ms", properties.getRefreshInterval());
+        // The first probes must not see an unknown health
+        update(refresh().blockingGet());
+        refreshes = Flowable.interval(properties.getRefreshInterval(), properties.getRefreshInterval(), TimeUnit.MILLISECONDS)
+            // A check which takes longer than the interval delays the next one, rather than running along with it
+            .onBackpressureDrop()
+            .concatMap(tick -> refresh().toFlowable(), 1)
+            .subscribe(this::update, e -> log.error("Health indicators refresh stopped", e));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshes != null) {
+            refreshes.dispose();
+        }
+        healths.onComplete();
+    }
+
+    /**
+     * @return the health of the application and of each indicator, as of the last refresh
+     */
+    public Health getHealth() {
+        return health;
+    }
+
+    /**
+     * @return the current health, then the next ones whose status, or the status of one of the indicators, changed
+     */
+    public Flowable<Health> watch() {
+        // A watcher which doesn't keep up only gets the latest health, compared to the last one it got
+        return healths.onBackpressureLatest().distinctUntilChanged(HealthRefresher::haveSameStatuses);
+    }
+
+    /**
+     * Check all the health indicators, in parallel.
+     *
+     * @return the health of the application and of each indicator
+     */
+    public Single<Health> refresh() {
+        return Flowable.fromIterable(indicatorChecks.entrySet())
+            .flatMapSingle(entry -> entry.getValue().check()
+                .timeout(properties.getTimeout(), TimeUnit.MILLISECONDS, Single.fromCallable(() ->
+                    org.springframework.boot.actuate.health.Health.down()
+                        .withDetail("error", "No answer within " + properties.getTimeout() + " ms")
+                        .build()))
+                .onErrorReturn(e -> org.springframework.boot.actuate.health.Health.down().withDetail("error", e.toString()).build())
+                .map(indicatorHealth -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), indicatorHealth)))
+            .toMap(Map.Entry::getKey, Map.Entry::getValue)
+            .map(this::healthToHealthProto);
+    }
+
+    /**
+     * The checks of a health indicator, one at a time.
+     */
+    private class IndicatorCheck {
+
+        private final org.springframework.boot.actuate.health.HealthIndicator healthIndicator;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private volatile org.springframework.boot.actuate.health.Health lastHealth;
+
+        private IndicatorCheck(org.springframework.boot.actuate.health.HealthIndicator healthIndicator) {
+            this.healthIndicator = healthIndicator;
+        }
+
+        /**
+         * @return the health of the indicator, or its last health reported DOWN if the previous check is still running
+         */
+        private Single<org.springframework.boot.actuate.health.Health> check() {
+            return Single.create(emitter -> {
+                if (!running.compareAndSet(false, true)) {
+                    emitter.onSuccess(stillRunningHealth());
+                    return;
+                }
+                try {
+                    taskExecutor.execute(() -> {
+                        try {
+                            org.springframework.boot.actuate.health.Health indicatorHealth = healthIndicator.health();
+                            lastHealth = indicatorHealth;
+                            emitter.onSuccess(indicatorHealth);
+                        } catch (Exception e) {
+                            emitter.tryOnError(e);
+                        } finally {
+                            running.set(false);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // The check didn't get a thread, it isn't running
+                    running.set(false);
+                    emitter.tryOnError(e);
+                }
+            });
+        }
+
+        private org.springframework.boot.actuate.health.Health stillRunningHealth() {
+            org.springframework.boot.actuate.health.Health.Builder builder = org.springframework.boot.actuate.health.Health.down();
+            if (lastHealth != null) {
+                lastHealth.getDetails().forEach(builder::withDetail);
+                builder.withDetail("lastStatus", lastHealth.getStatus().getCode());
+            }
+            return builder.withDetail("error", "Previous check still running").build();
+        }
+    }
+
+    private void update(Health refreshedHealth) {
+        health = refreshedHealth;
+        healths.onNext(refreshedHealth);
+    }
+
+    private static boolean haveSameStatuses(Health health, Health otherHealth) {
+        Map<String, HealthIndicator> healthIndicators = health.getHealthIndicatorsMap();
+        Map<String, HealthIndicator> otherHealthIndicators = otherHealth.getHealthIndicatorsMap();
+        return health.getStatus() == otherHealth.getStatus() &&
+            healthIndicators.keySet().equals(otherHealthIndicators.keySet()) &&
+            healthIndicators.entrySet().stream()
+                .allMatch(entry -> entry.getValue().getStatus() == otherHealthIndicators.get(entry.getKey()).getStatus());
+    }
+
+    private Health healthToHealthProto(Map<String, org.springframework.boot.actuate.health.Health> indicatorHealths) {
+        Map<String, HealthIndicator> healthIndicatorProtos = new HashMap<>();
+        indicatorHealths.forEach((key, indicatorHealth) -> healthIndicatorProtos.put(key, healthToHealthIndicatorProto(indicatorHealth)));
+        return Health.newBuilder()
+            .setStatus(Status.valueOf(healthAggregator.aggregate(indicatorHealths).getStatus().toString()))
+            .putAllHealthIndicators(healthIndicatorProtos)
+            .build();
+    }
+
+    private HealthIndicator healthToHealthIndicatorProto(org.springframework.boot.actuate.health.Health health) {
+        final Map<String, String> details = new HashMap<>();
+        health.getDetails().forEach( (detailKey, detailValue) ->
+            details.put(detailKey, detailValue.toString())
+        );
+        return HealthIndicator.newBuilder()
+            .setStatus(Status.valueOf(health.getStatus().toString()))
+            .putAllDetails(details)
+            .build();
+    }
+}
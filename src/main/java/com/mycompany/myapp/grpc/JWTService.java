@@ -3,6 +3,7 @@ package com.mycompany.myapp.grpc;
 import com.mycompany.myapp.security.jwt.TokenProvider;
 
 import io.grpc.Status;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import org.lognet.springboot.grpc.GRpcService;
 import org.slf4j.Logger;
@@ -22,9 +23,12 @@ public class JWTService extends RxJWTServiceGrpc.JWTServiceImplBase {
 
     private final AuthenticationManager authenticationManager;
 
-    public JWTService(TokenProvider tokenProvider, AuthenticationManager authenticationManager) {
+    private final Scheduler scheduler;
+
+    public JWTService(TokenProvider tokenProvider, AuthenticationManager authenticationManager, Scheduler scheduler) {
         this.tokenProvider = tokenProvider;
         this.authenticationManager = authenticationManager;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -42,7 +46,8 @@ public class JWTService extends RxJWTServiceGrpc.JWTServiceImplBase {
                     throw Status.UNAUTHENTICATED.asRuntimeException();
                 }
             })
-            .map(jwt -> JWTToken.newBuilder().setIdToken(jwt).build());
+            .map(jwt -> JWTToken.newBuilder().setIdToken(jwt).build())
+            .subscribeOn(scheduler);
 
     }
 }
@@ -1,55 +1,248 @@
 package com.mycompany.myapp.grpc;
 
-import com.google.protobuf.Empty;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import org.lognet.springboot.grpc.GRpcService;
+import org.springframework.boot.actuate.endpoint.MetricReaderPublicMetrics;
 import org.springframework.boot.actuate.endpoint.PublicMetrics;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.util.Assert;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 @GRpcService(interceptors = {AuthenticationInterceptor.class})
 public class MetricService extends RxMetricServiceGrpc.MetricServiceImplBase {
 
+    private static final long DEFAULT_INTERVAL_MILLIS = 5000;
+
+    private static final long MIN_INTERVAL_MILLIS = 1000;
+
+    private static final double DURATION_FACTOR = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
     private final List<PublicMetrics> publicMetrics;
 
+    private final MetricRegistry metricRegistry;
+
+    private final Scheduler scheduler;
+
     /**
      * Create a new {@link MetricService} instance.
      * @param publicMetrics the metrics to expose. The collection will be sorted using the
      * {@link AnnotationAwareOrderComparator}.
+     * @param metricRegistry the Dropwizard metrics, streamed by {@link #streamMetrics(Single)}
+     * @param scheduler the scheduler of the streamed batches
      */
-    public MetricService(Collection<PublicMetrics> publicMetrics) {
+    public MetricService(Collection<PublicMetrics> publicMetrics, MetricRegistry metricRegistry, Scheduler scheduler) {
         Assert.notNull(publicMetrics, "PublicMetrics must not be null");
         this.publicMetrics = new ArrayList<>(publicMetrics);
         AnnotationAwareOrderComparator.sort(this.publicMetrics);
+        this.metricRegistry = metricRegistry;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Flowable<Metric> getMetrics(Single<MetricsRequest> request) {
+        return request
+            .flatMapPublisher(metricsRequest -> {
+                String prefix = metricsRequest.getPrefix();
+                SortedMap<String, Timer> timers = metricRegistry.getTimers(prefixFilter(prefix));
+                SortedMap<String, com.codahale.metrics.Histogram> histograms = metricRegistry.getHistograms(prefixFilter(prefix));
+                Flowable<org.springframework.boot.actuate.metrics.Metric<?>> publicMetricValues = prefix.isEmpty() ?
+                    Flowable.fromIterable(publicMetrics)
+                        .map(PublicMetrics::metrics)
+                        .flatMap(Flowable::fromIterable) :
+                    Flowable.fromIterable(publicMetrics)
+                        // These read every metric of the MetricRegistry, only those of the prefix are read from it
+                        .filter(metrics -> !(metrics instanceof MetricReaderPublicMetrics))
+                        .map(PublicMetrics::metrics)
+                        .flatMap(Flowable::fromIterable)
+                        .concatWith(Flowable.defer(() -> Flowable.fromIterable(registryMetrics(prefix))));
+                Flowable<Metric> scalars = publicMetricValues
+                    .filter(metric -> metric.getName().startsWith(prefix))
+                    // The timers and histograms are sent whole, rather than flattened by the PublicMetrics
+                    .filter(metric -> !isFlattened(metric.getName(), timers, histograms))
+                    .map(metric -> {
+                        Metric.Builder builder = Metric.newBuilder()
+                            .setName(metric.getName());
+                        if (metric.getTimestamp() != null) {
+                            builder.setTimestamp(ProtobufMappers.dateToTimestamp(metric.getTimestamp()));
+                        }
+                        return setValue(builder, metric.getValue()).build();
+                    });
+                Flowable<Metric> timerMetrics = Flowable.fromIterable(timers.entrySet())
+                    .map(timer -> Metric.newBuilder().setName(timer.getKey()).setHistogram(toHistogram(timer.getValue())).build());
+                Flowable<Metric> histogramMetrics = Flowable.fromIterable(histograms.entrySet())
+                    .map(histogram -> Metric.newBuilder().setName(histogram.getKey()).setHistogram(toHistogram(histogram.getValue())).build());
+                return Flowable.concat(scalars, timerMetrics, histogramMetrics);
+            });
     }
 
     @Override
-    public Flowable<Metric> getMetrics(Single<Empty> request) {
+    public Flowable<MetricBatch> streamMetrics(Single<MetricsSubscription> request) {
         return request
-            .map(empty -> publicMetrics)
-            .flatMapPublisher(Flowable::fromIterable)
-            .map(PublicMetrics::metrics)
-            .flatMap(Flowable::fromIterable)
-            .map(metric -> {
-                Metric.Builder builder = Metric.newBuilder()
-                    .setName(metric.getName());
-                if (metric.getTimestamp() != null) {
-                    builder.setTimestamp(ProtobufMappers.dateToTimestamp(metric.getTimestamp()));
-                }
-                if (metric.getValue() instanceof Long || metric.getValue() instanceof Integer) {
-                    builder.setLongValue(metric.getValue().longValue());
-                } else if (metric.getValue() instanceof Float || metric.getValue() instanceof Double) {
-                    builder.setDoubleValue((metric.getValue()).doubleValue());
-                } else {
-                    builder.setStringValue(metric.getValue().toString());
-                }
-                return builder.build();
+            .flatMapPublisher(subscription -> {
+                long interval = subscription.getIntervalMillis() > 0 ?
+                    Math.max(subscription.getIntervalMillis(), MIN_INTERVAL_MILLIS) : DEFAULT_INTERVAL_MILLIS;
+                MetricBatchEncoder encoder = new MetricBatchEncoder(prefixFilter(subscription.getPrefix()));
+                return Flowable.interval(0, interval, TimeUnit.MILLISECONDS, scheduler)
+                    // A batch is only read when the client can take it, so the next one carries what it skipped
+                    .onBackpressureDrop()
+                    .map(tick -> encoder.encode(metricRegistry))
+                    .filter(batch -> batch.getMetricsCount() > 0);
             });
     }
 
+    /**
+     * @return the gauges, counters and meters of the MetricRegistry starting with the prefix, named like the
+     * MetricReaderPublicMetrics name them
+     */
+    private List<org.springframework.boot.actuate.metrics.Metric<?>> registryMetrics(String prefix) {
+        MetricFilter filter = prefixFilter(prefix);
+        List<org.springframework.boot.actuate.metrics.Metric<?>> metrics = new ArrayList<>();
+        metricRegistry.getGauges(filter).forEach((name, gauge) -> {
+            Object value = gauge.getValue();
+            if (value instanceof Number) {
+                metrics.add(new org.springframework.boot.actuate.metrics.Metric<>(name, (Number) value));
+            }
+        });
+        metricRegistry.getCounters(filter).forEach((name, counter) ->
+            metrics.add(new org.springframework.boot.actuate.metrics.Metric<>(name, counter.getCount())));
+        metricRegistry.getMeters(filter).forEach((name, meter) -> forEachMeteredValue(name, meter,
+            (valueName, value) -> metrics.add(new org.springframework.boot.actuate.metrics.Metric<>(valueName, value))));
+        return metrics;
+    }
+
+    /**
+     * Passes each value of the meter to the consumer, named like the MetricReaderPublicMetrics name them, for both
+     * GetMetrics and StreamMetrics.
+     */
+    private static void forEachMeteredValue(String name, Metered metered, BiConsumer<String, Number> consumer) {
+        consumer.accept(name + ".count", metered.getCount());
+        consumer.accept(name + ".meanRate", metered.getMeanRate());
+        consumer.accept(name + ".oneMinuteRate", metered.getOneMinuteRate());
+        consumer.accept(name + ".fiveMinuteRate", metered.getFiveMinuteRate());
+        consumer.accept(name + ".fifteenMinuteRate", metered.getFifteenMinuteRate());
+    }
+
+    private static MetricFilter prefixFilter(String prefix) {
+        return prefix.isEmpty() ? MetricFilter.ALL : (name, metric) -> name.startsWith(prefix);
+    }
+
+    /**
+     * @return whether the PublicMetrics metric is a value of one of the timers or histograms, which it flattened into
+     * name.count, name.meanRate, name.snapshot.mean...
+     */
+    private static boolean isFlattened(String name, Map<String, ?> timers, Map<String, ?> histograms) {
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot < 0) {
+            return false;
+        }
+        String metricName = name.substring(0, lastDot);
+        if (metricName.endsWith(SNAPSHOT_SUFFIX)) {
+            metricName = metricName.substring(0, metricName.length() - SNAPSHOT_SUFFIX.length());
+        }
+        return timers.containsKey(metricName) || histograms.containsKey(metricName);
+    }
+
+    private static Histogram toHistogram(Timer timer) {
+        return toHistogram(timer.getCount(), timer.getSnapshot(), DURATION_FACTOR)
+            .setMeanRate(timer.getMeanRate())
+            .setM1Rate(timer.getOneMinuteRate())
+            .setM5Rate(timer.getFiveMinuteRate())
+            .setM15Rate(timer.getFifteenMinuteRate())
+            .build();
+    }
+
+    private static Histogram toHistogram(com.codahale.metrics.Histogram histogram) {
+        return toHistogram(histogram.getCount(), histogram.getSnapshot(), 1.0).build();
+    }
+
+    private static Histogram.Builder toHistogram(long count, Snapshot snapshot, double factor) {
+        return Histogram.newBuilder()
+            .setCount(count)
+            .setMin(snapshot.getMin() * factor)
+            .setMax(snapshot.getMax() * factor)
+            .setMean(snapshot.getMean() * factor)
+            .setStdDev(snapshot.getStdDev() * factor)
+            .setP50(snapshot.getMedian() * factor)
+            .setP75(snapshot.get75thPercentile() * factor)
+            .setP95(snapshot.get95thPercentile() * factor)
+            .setP99(snapshot.get99thPercentile() * factor)
+            .setP999(snapshot.get999thPercentile() * factor);
+    }
+
+    private static Metric.Builder setValue(Metric.Builder builder, Object value) {
+        if (value instanceof Histogram) {
+            builder.setHistogram((Histogram) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            builder.setLongValue(((Number) value).longValue());
+        } else if (value instanceof Float || value instanceof Double) {
+            builder.setDoubleValue(((Number) value).doubleValue());
+        } else {
+            builder.setStringValue(String.valueOf(value));
+        }
+        return builder;
+    }
+
+    /**
+     * Encodes the metrics of a StreamMetrics subscription, keeping what was sent to it already.
+     * <p>
+     * The meters are flattened into one metric per value, the timers and histograms are sent whole.
+     */
+    private static class MetricBatchEncoder {
+
+        private final MetricFilter filter;
+
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private final Map<String, Object> sentValues = new HashMap<>();
+
+        MetricBatchEncoder(MetricFilter filter) {
+            this.filter = filter;
+        }
+
+        MetricBatch encode(MetricRegistry metricRegistry) {
+            MetricBatch.Builder batch = MetricBatch.newBuilder()
+                .setTimestamp(ProtobufMappers.instantToTimestamp(Instant.now()));
+            metricRegistry.getGauges(filter).forEach((name, gauge) -> add(batch, name, gauge.getValue()));
+            metricRegistry.getCounters(filter).forEach((name, counter) -> add(batch, name, counter.getCount()));
+            metricRegistry.getMeters(filter).forEach((name, meter) ->
+                forEachMeteredValue(name, meter, (valueName, value) -> add(batch, valueName, value)));
+            metricRegistry.getHistograms(filter).forEach((name, histogram) -> add(batch, name, toHistogram(histogram)));
+            metricRegistry.getTimers(filter).forEach((name, timer) -> add(batch, name, toHistogram(timer)));
+            return batch.build();
+        }
+
+        private void add(MetricBatch.Builder batch, String name, Object value) {
+            if (value == null || value.equals(sentValues.put(name, value))) {
+                return;
+            }
+            Metric.Builder metric = Metric.newBuilder();
+            Integer id = ids.get(name);
+            if (id == null) {
+                // 0 is the default value of the field, the ids start at 1
+                id = ids.size() + 1;
+                ids.put(name, id);
+                metric.setName(name);
+            }
+            batch.addMetrics(setValue(metric.setId(id), value));
+        }
+    }
+
 }
@@ -0,0 +1,146 @@
+package com.mycompany.myapp.grpc;
+
+import com.mycompany.myapp.config.metrics.HdrHistogramReservoir;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.protobuf.MessageLite;
+import io.grpc.*;
+import io.grpc.Status;
+import org.lognet.springboot.grpc.GRpcGlobalInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency, status codes, message counts and sizes, and calls in flight of every gRPC method into the
+ * MetricRegistry, under grpc.server.[service].[method].
+ * <p>
+ * The latency and sizes are recorded into HdrHistogram reservoirs, which don't allocate on update.
+ */
+@Component
+@GRpcGlobalInterceptor
+public class MetricsInterceptor implements ServerInterceptor {
+
+    private static final String PROP_METRIC_REG_GRPC_SERVER = "grpc.server";
+
+    private final MetricRegistry metricRegistry;
+
+    private final ConcurrentMap<String, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+
+    public MetricsInterceptor(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> serverCall, Metadata metadata, ServerCallHandler<ReqT, RespT> serverCallHandler) {
+        MethodMetrics metrics = methodMetrics.computeIfAbsent(serverCall.getMethodDescriptor().getFullMethodName(),
+            MethodMetrics::new);
+        long start = System.nanoTime();
+        InstrumentedServerCall<ReqT, RespT> instrumentedServerCall = new InstrumentedServerCall<>(serverCall, metrics);
+        ServerCall.Listener<ReqT> listener = serverCallHandler.startCall(instrumentedServerCall, metadata);
+        // Only counted once started, as the listener which ends it is never called when startCall throws
+        metrics.inFlight.inc();
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+
+            @Override
+            public void onMessage(ReqT message) {
+                metrics.requests.mark();
+                if (message instanceof MessageLite) {
+                    metrics.requestSize.update(((MessageLite) message).getSerializedSize());
+                }
+                super.onMessage(message);
+            }
+
+            // A call ends either with onComplete, after it was closed, or with onCancel
+            @Override
+            public void onComplete() {
+                metrics.end(start, instrumentedServerCall.status);
+                super.onComplete();
+            }
+
+            @Override
+            public void onCancel() {
+                metrics.end(start, Status.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    private static class InstrumentedServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final MethodMetrics metrics;
+
+        private volatile Status status = Status.UNKNOWN;
+
+        InstrumentedServerCall(ServerCall<ReqT, RespT> serverCall, MethodMetrics metrics) {
+            super(serverCall);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            metrics.responses.mark();
+            if (message instanceof MessageLite) {
+                metrics.responseSize.update(((MessageLite) message).getSerializedSize());
+            }
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+            super.close(status, trailers);
+        }
+    }
+
+    private class MethodMetrics {
+
+        private final String name;
+
+        private final Timer latency;
+
+        private final Meter requests;
+
+        private final Meter responses;
+
+        private final Histogram requestSize;
+
+        private final Histogram responseSize;
+
+        private final Counter inFlight;
+
+        private final Meter[] statusCodes = new Meter[Status.Code.values().length];
+
+        MethodMetrics(String fullMethodName) {
+            this.name = MetricRegistry.name(PROP_METRIC_REG_GRPC_SERVER, fullMethodName.replace('/', '.'));
+            this.latency = metricRegistry.timer(MetricRegistry.name(name, "latency"),
+                () -> new Timer(new HdrHistogramReservoir()));
+            this.requests = metricRegistry.meter(MetricRegistry.name(name, "requests"));
+            this.responses = metricRegistry.meter(MetricRegistry.name(name, "responses"));
+            this.requestSize = metricRegistry.histogram(MetricRegistry.name(name, "request-size"),
+                () -> new Histogram(new HdrHistogramReservoir()));
+            this.responseSize = metricRegistry.histogram(MetricRegistry.name(name, "response-size"),
+                () -> new Histogram(new HdrHistogramReservoir()));
+            this.inFlight = metricRegistry.counter(MetricRegistry.name(name, "in-flight"));
+        }
+
+        void end(long start, Status status) {
+            latency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.dec();
+            int code = status.getCode().ordinal();
+            Meter statusCode = statusCodes[code];
+            if (statusCode == null) {
+                // The registry returns the same meter to the threads racing to get it
+                statusCode = metricRegistry.meter(MetricRegistry.name(name, "status", status.getCode().name()));
+                statusCodes[code] = statusCode;
+            }
+            statusCode.mark();
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.mycompany.myapp.grpc;
 
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Timestamp;
 import org.springframework.data.domain.Pageable;
@@ -22,6 +25,9 @@ public abstract class ProtobufMappers {
     private static final int DEFAULT_MAX_PAGE_SIZE = 2000;
     private static final Pageable DEFAULT_PAGE_REQUEST = new org.springframework.data.domain.PageRequest(0, 20);
 
+    // Thread-safe, and shared so that Jackson's serializer caches are only built once
+    static final ObjectWriter JSON_WRITER = new ObjectMapper().writer();
+
     public static LocalDate dateProtoToLocalDate(Date date) {
         return date == null ? null : LocalDate.of(date.getYear(), date.getMonth(), date.getDay());
     }
@@ -122,10 +128,10 @@ public abstract class ProtobufMappers {
         if (event == null) {
             return null;
         }
-        ObjectMapper mapper = new ObjectMapper();
         AuditEvent.Builder builder =  AuditEvent.newBuilder()
             .setTimestamp(dateToTimestamp(event.getTimestamp()))
-            .setData(mapper.writeValueAsString(event.getData()));
+            .setData(JSON_WRITER.writeValueAsString(event.getData()));
+        event.getData().forEach((key, value) -> builder.putDataMap(key, String.valueOf(value)));
         if (event.getPrincipal() != null) {
             builder.setPrincipal(event.getPrincipal());
         }
@@ -135,4 +141,28 @@ public abstract class ProtobufMappers {
         return builder.build();
     }
 
+    /**
+     * Map a persisted audit event straight to its protobuf message, without the deprecated JSON data string.
+     *
+     * @param event the event to map
+     * @return the protobuf message
+     */
+    public static AuditEvent persistentAuditEventToAuditEventProto(PersistentAuditEvent event) {
+        if (event == null) {
+            return null;
+        }
+        AuditEvent.Builder builder = AuditEvent.newBuilder()
+            .setTimestamp(instantToTimestamp(event.getAuditEventDate()));
+        if (event.getData() != null) {
+            builder.putAllDataMap(event.getData());
+        }
+        if (event.getPrincipal() != null) {
+            builder.setPrincipal(event.getPrincipal());
+        }
+        if (event.getAuditEventType() != null) {
+            builder.setType(event.getAuditEventType());
+        }
+        return builder.build();
+    }
+
 }
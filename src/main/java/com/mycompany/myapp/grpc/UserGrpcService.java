@@ -1,39 +1,53 @@
 package com.mycompany.myapp.grpc;
 
+import com.mycompany.myapp.config.Constants;
 import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.repository.EntityCursor;
+import com.mycompany.myapp.repository.UserLoginAndEmail;
 import com.mycompany.myapp.repository.UserRepository;
 import com.mycompany.myapp.security.AuthoritiesConstants;
 import com.mycompany.myapp.security.SecurityUtils;
-import com.mycompany.myapp.service.MailService;
 import com.mycompany.myapp.service.UserService;
+import com.mycompany.myapp.service.dto.UserDTO;
 
 import com.google.protobuf.Empty;
 import com.google.protobuf.StringValue;
 import io.grpc.Status;
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import org.lognet.springboot.grpc.GRpcService;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionSystemException;
+
+import javax.validation.ConstraintViolationException;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @GRpcService(interceptors = {AuthenticationInterceptor.class})
 public class UserGrpcService extends RxUserServiceGrpc.UserServiceImplBase {
 
+    private static final int DEFAULT_STREAM_BATCH_SIZE = 100;
+    private static final int MAX_STREAM_BATCH_SIZE = 2000;
+    private static final int CREATE_USERS_BATCH_SIZE = 100;
+
     private final org.slf4j.Logger log = LoggerFactory.getLogger(UserGrpcService.class);
 
     private final UserRepository userRepository;
 
-    private final MailService mailService;
-
     private final UserService userService;
 
     private final UserProtoMapper userProtoMapper;
 
-    public UserGrpcService(UserRepository userRepository, MailService mailService, UserService userService,
-                        UserProtoMapper userProtoMapper) {
+    private final Scheduler scheduler;
+
+    public UserGrpcService(UserRepository userRepository, UserService userService,
+                        UserProtoMapper userProtoMapper, Scheduler scheduler) {
         this.userRepository = userRepository;
-        this.mailService = mailService;
         this.userService = userService;
         this.userProtoMapper = userProtoMapper;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -42,37 +56,133 @@ public class UserGrpcService extends RxUserServiceGrpc.UserServiceImplBase {
             .doOnSuccess(userProto -> log.debug("gRPC request to save User : {}", userProto))
             .filter(userProto -> userProto.getIdOneofCase() != UserProto.IdOneofCase.ID)
             .switchIfEmpty(Single.error(Status.INVALID_ARGUMENT.withDescription("A new user cannot already have an ID").asException()))
-            .filter(userProto -> !userRepository.findOneByLogin(userProto.getLogin().toLowerCase()).isPresent())
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Login already in use").asException()))
-            .filter(userProto -> !userRepository.findOneByEmailIgnoreCase(userProto.getEmail()).isPresent())
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Email already in use").asException()))
+            .doOnSuccess(userProto -> {
+                List<UserLoginAndEmail> holders = userRepository
+                    .findAllLoginAndEmailByLoginOrEmail(userProto.getLogin().toLowerCase(), userProto.getEmail());
+                if (holders.stream().anyMatch(holder -> holder.getLogin().equalsIgnoreCase(userProto.getLogin()))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Login already in use").asException();
+                }
+                if (holders.stream().anyMatch(holder -> userProto.getEmail().equalsIgnoreCase(holder.getEmail()))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Email already in use").asException();
+                }
+            })
+            .map(userProtoMapper::userProtoToUserDTO)
+            .map(user -> {
+                try {
+                    return userService.createUser(user);
+                } catch (DataIntegrityViolationException e) {
+                    // Another request took the login or the email since they were checked
+                    log.info("Login or email already in use", e);
+                    throw Status.ALREADY_EXISTS.withDescription("Login or email already in use").asException();
+                }
+            })
+            .map(userProtoMapper::userToUserProto)
+            .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Flowable<CreateUserResult> createUsers(Flowable<UserProto> request) {
+        return request
+            .buffer(CREATE_USERS_BATCH_SIZE)
+            .observeOn(scheduler)
+            .concatMapIterable(this::createUserBatch);
+    }
+
+    /**
+     * Create a batch of users, with a single uniqueness query and a single transaction for the valid ones.
+     */
+    private List<CreateUserResult> createUserBatch(List<UserProto> userProtos) {
+        log.debug("gRPC request to create {} Users", userProtos.size());
+        Set<String> logins = userProtos.stream().map(userProto -> userProto.getLogin().toLowerCase()).collect(Collectors.toSet());
+        Set<String> emails = userProtos.stream().map(userProto -> userProto.getEmail().toLowerCase()).collect(Collectors.toSet());
+        Set<String> takenLogins = new HashSet<>();
+        Set<String> takenEmails = new HashSet<>();
+        userRepository.findAllLoginAndEmailByLoginInOrEmailIn(logins, emails).forEach(holder -> {
+            takenLogins.add(holder.getLogin());
+            if (holder.getEmail() != null) {
+                takenEmails.add(holder.getEmail().toLowerCase());
+            }
+        });
+
+        CreateUserResult[] results = new CreateUserResult[userProtos.size()];
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < userProtos.size(); i++) {
+            UserProto userProto = userProtos.get(i);
+            String login = userProto.getLogin().toLowerCase();
+            String email = userProto.getEmail().toLowerCase();
+            String error = null;
+            if (userProto.getIdOneofCase() == UserProto.IdOneofCase.ID) {
+                error = "A new user cannot already have an ID";
+            } else if (takenLogins.contains(login)) {
+                error = "Login already in use";
+            } else if (!email.isEmpty() && takenEmails.contains(email)) {
+                error = "Email already in use";
+            }
+            if (error != null) {
+                results[i] = CreateUserResult.newBuilder().setLogin(userProto.getLogin()).setError(error).build();
+            } else {
+                // Later users of the same batch can't take them either
+                takenLogins.add(login);
+                takenEmails.add(email);
+                validIndexes.add(i);
+            }
+        }
+
+        List<UserDTO> userDTOs = validIndexes.stream()
+            .map(userProtos::get)
             .map(userProtoMapper::userProtoToUserDTO)
-            .map(userService::createUser)
-            .doOnSuccess(mailService::sendCreationEmail)
-            .map(userProtoMapper::userToUserProto);
+            .collect(Collectors.toList());
+        List<User> users;
+        try {
+            users = userDTOs.isEmpty() ? Collections.emptyList() : userService.createUsers(userDTOs);
+        } catch (DataIntegrityViolationException | TransactionSystemException | ConstraintViolationException e) {
+            // The whole batch was rolled back, retry the users one by one to find the failing ones
+            log.info("Batch creation of {} Users failed, creating them one by one", userDTOs.size(), e);
+            users = null;
+        }
+        for (int i = 0; i < validIndexes.size(); i++) {
+            int index = validIndexes.get(i);
+            CreateUserResult.Builder result = CreateUserResult.newBuilder().setLogin(userProtos.get(index).getLogin());
+            try {
+                User user = users != null ? users.get(i) : userService.createUser(userDTOs.get(i));
+                result.setUser(userProtoMapper.userDTOToUserProto(new UserDTO(user)));
+            } catch (DataIntegrityViolationException e) {
+                result.setError("Login or email already in use");
+            } catch (TransactionSystemException | ConstraintViolationException e) {
+                result.setError("Invalid user");
+            }
+            results[index] = result.build();
+        }
+        return Arrays.asList(results);
     }
 
     @Override
     public Single<UserProto> updateUser(Single<UserProto> request) {
         return request
             .doOnSuccess(userProto -> log.debug("gRPC request to update User : {}", userProto))
-            .filter(userProto -> !userRepository
-                .findOneByEmailIgnoreCase(userProto.getEmail())
-                .map(User::getId)
-                .filter(id -> !id.equals(userProto.getId()))
-                .isPresent()
-            )
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Email already in use").asException()))
-            .filter(userProto -> !userRepository
-                .findOneByLogin(userProto.getLogin().toLowerCase())
-                .map(User::getId)
-                .filter(id -> !id.equals(userProto.getId()))
-                .isPresent()
-            )
-            .switchIfEmpty(Single.error(Status.ALREADY_EXISTS.withDescription("Login already in use").asException()))
+            .doOnSuccess(userProto -> {
+                List<UserLoginAndEmail> holders = userRepository
+                    .findAllLoginAndEmailByLoginOrEmail(userProto.getLogin().toLowerCase(), userProto.getEmail());
+                if (holders.stream().anyMatch(holder -> userProto.getEmail().equalsIgnoreCase(holder.getEmail())
+                    && !holder.getId().equals(userProto.getId()))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Email already in use").asException();
+                }
+                if (holders.stream().anyMatch(holder -> holder.getLogin().equalsIgnoreCase(userProto.getLogin())
+                    && !holder.getId().equals(userProto.getId()))) {
+                    throw Status.ALREADY_EXISTS.withDescription("Login already in use").asException();
+                }
+            })
             .map(userProtoMapper::userProtoToUserDTO)
-            .map(user -> userService.updateUser(user).orElseThrow(Status.NOT_FOUND::asException))
-            .map(userProtoMapper::userDTOToUserProto);
+            .map(user -> {
+                try {
+                    return userService.updateUser(user).orElseThrow(Status.NOT_FOUND::asException);
+                } catch (DataIntegrityViolationException e) {
+                    log.info("Login or email already in use", e);
+                    throw Status.ALREADY_EXISTS.withDescription("Login or email already in use").asException();
+                }
+            })
+            .map(userProtoMapper::userDTOToUserProto)
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -80,9 +190,45 @@ public class UserGrpcService extends RxUserServiceGrpc.UserServiceImplBase {
         log.debug("gRPC request to get all users");
         return request
             .map(ProtobufMappers::pageRequestProtoToPageRequest)
-            .map(userService::getAllManagedUsers)
-            .flatMapPublisher(Flowable::fromIterable)
-            .map(userProtoMapper::userDTOToUserProto);
+            .flatMapPublisher(pageable -> Flowable.<User, EntityCursor<User>>generate(
+                () -> userRepository.streamAllByLoginNot(pageable, Constants.ANONYMOUS_USER),
+                (cursor, emitter) -> {
+                    if (cursor.hasNext()) {
+                        emitter.onNext(cursor.next());
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                EntityCursor::close
+            ))
+            .map(UserDTO::new)
+            .map(userProtoMapper::userDTOToUserProto)
+            .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Flowable<UserProto> streamAllUsers(Single<UserCursor> request) {
+        return request
+            .doOnSuccess(cursor -> log.debug("gRPC request to stream all users after id {}", cursor.getAfterId()))
+            .flatMapPublisher(cursor -> {
+                int batchSize = cursor.getBatchSize() < 1 ? DEFAULT_STREAM_BATCH_SIZE :
+                    Math.min(cursor.getBatchSize(), MAX_STREAM_BATCH_SIZE);
+                // Each batch is only fetched when the previous one has been consumed
+                return Flowable.<List<UserDTO>, Long>generate(cursor::getAfterId, (afterId, emitter) -> {
+                    List<UserDTO> users = userService.getManagedUsersAfter(afterId, batchSize);
+                    if (!users.isEmpty()) {
+                        emitter.onNext(users);
+                    }
+                    if (users.size() < batchSize) {
+                        emitter.onComplete();
+                        return afterId;
+                    }
+                    return users.get(users.size() - 1).getId();
+                });
+            })
+            .concatMapIterable(users -> users)
+            .map(userProtoMapper::userDTOToUserProto)
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -91,7 +237,8 @@ public class UserGrpcService extends RxUserServiceGrpc.UserServiceImplBase {
             .map(StringValue::getValue)
             .doOnSuccess(login -> log.debug("gRPC request to get User : {}", login))
             .map(login -> userService.getUserWithAuthoritiesByLogin(login).orElseThrow(Status.NOT_FOUND::asException))
-            .map(userProtoMapper::userToUserProto);
+            .map(userProtoMapper::userToUserProto)
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -100,7 +247,8 @@ public class UserGrpcService extends RxUserServiceGrpc.UserServiceImplBase {
             .map(StringValue::getValue)
             .doOnSuccess(login -> log.debug("gRPC request to delete User: {}", login))
             .doOnSuccess(userService::deleteUser)
-            .map(l -> Empty.newBuilder().build());
+            .map(l -> Empty.newBuilder().build())
+            .subscribeOn(scheduler);
     }
 
     @Override
@@ -111,7 +259,8 @@ public class UserGrpcService extends RxUserServiceGrpc.UserServiceImplBase {
             .switchIfEmpty(Single.error(Status.PERMISSION_DENIED.asException()))
             .map(e -> userService.getAuthorities())
             .flatMapPublisher(Flowable::fromIterable)
-            .map(authority -> StringValue.newBuilder().setValue(authority).build());
+            .map(authority -> StringValue.newBuilder().setValue(authority).build())
+            .subscribeOn(scheduler);
     }
 
 }
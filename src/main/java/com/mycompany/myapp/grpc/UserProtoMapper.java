@@ -16,21 +16,21 @@ public interface UserProtoMapper {
         if ( userProto == null ) {
             return null;
         }
-        return new UserDTO(
-            userProto.getIdOneofCase() == UserProto.IdOneofCase.ID ? userProto.getId() : null,
-            userProto.getLogin().isEmpty() ? null : userProto.getLogin(),
-            userProto.getFirstName().isEmpty() ? null : userProto.getFirstName(),
-            userProto.getLastName().isEmpty() ? null : userProto.getLastName(),
-            userProto.getEmail().isEmpty() ? null : userProto.getEmail(),
-            userProto.getActivated(),
-            userProto.getImageUrl().isEmpty() ? null : userProto.getImageUrl(),
-            userProto.getLangKey().isEmpty() ? null : userProto.getLangKey(),
-            userProto.getCreatedBy().isEmpty() ? null : userProto.getCreatedBy(),
-            ProtobufMappers.timestampToInstant(userProto.getCreatedDate()),
-            userProto.getLastModifiedBy().isEmpty() ? null: userProto.getLastModifiedBy(),
-            ProtobufMappers.timestampToInstant(userProto.getLastModifiedDate()),
-            new HashSet<>(userProto.getAuthoritiesList())
-        );
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(userProto.getIdOneofCase() == UserProto.IdOneofCase.ID ? userProto.getId() : null);
+        userDTO.setLogin(userProto.getLogin().isEmpty() ? null : userProto.getLogin());
+        userDTO.setFirstName(userProto.getFirstName().isEmpty() ? null : userProto.getFirstName());
+        userDTO.setLastName(userProto.getLastName().isEmpty() ? null : userProto.getLastName());
+        userDTO.setEmail(userProto.getEmail().isEmpty() ? null : userProto.getEmail());
+        userDTO.setActivated(userProto.getActivated());
+        userDTO.setImageUrl(userProto.getImageUrl().isEmpty() ? null : userProto.getImageUrl());
+        userDTO.setLangKey(userProto.getLangKey().isEmpty() ? null : userProto.getLangKey());
+        userDTO.setCreatedBy(userProto.getCreatedBy().isEmpty() ? null : userProto.getCreatedBy());
+        userDTO.setCreatedDate(ProtobufMappers.timestampToInstant(userProto.getCreatedDate()));
+        userDTO.setLastModifiedBy(userProto.getLastModifiedBy().isEmpty() ? null: userProto.getLastModifiedBy());
+        userDTO.setLastModifiedDate(ProtobufMappers.timestampToInstant(userProto.getLastModifiedDate()));
+        userDTO.setAuthorities(new HashSet<>(userProto.getAuthoritiesList()));
+        return userDTO;
     }
 
     default UserProto userDTOToUserProto(UserDTO userDTO) {
@@ -0,0 +1,63 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.ReplayProcessor;
+import io.reactivex.schedulers.Schedulers;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the audit events, as they are recorded by the AuditEventRepository, to the subscribers of the
+ * SubscribeAuditEvents RPC.
+ * <p>
+ * The events published during the last two application.audit.subscription-overlap are kept, and replayed to each new
+ * subscriber, so that it gets the recent events which might not be stored yet. Every subscriber gets its own bounded
+ * buffer, whose oldest events are dropped when it doesn't keep up, so that a slow subscriber never blocks the audited
+ * threads nor the other subscribers.
+ */
+@Component
+public class AuditEventBroadcaster {
+
+    /**
+     * Number of events buffered for a subscriber which doesn't keep up.
+     */
+    static final int SUBSCRIBER_BUFFER_SIZE = 1000;
+
+    private static final String PROP_METRIC_REG_AUDIT_BROADCASTER = "audit.broadcaster";
+
+    private final FlowableProcessor<PersistentAuditEvent> processor;
+
+    private final Meter dropped;
+
+    public AuditEventBroadcaster(ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        // Twice the overlap, so that the events stamped after the replay of a subscriber are all still kept
+        this.processor = ReplayProcessor.<PersistentAuditEvent>createWithTime(
+            2 * applicationProperties.getAudit().getSubscriptionOverlap(), TimeUnit.MILLISECONDS, Schedulers.computation())
+            .toSerialized();
+        this.dropped = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_AUDIT_BROADCASTER, "dropped"));
+    }
+
+    /**
+     * @param auditEvent the recorded event, which must not be modified afterwards
+     */
+    public void publish(PersistentAuditEvent auditEvent) {
+        processor.onNext(auditEvent);
+    }
+
+    /**
+     * @return the recently published events, then the ones published from the subscription on, through the buffer
+     * of the subscriber
+     */
+    public Flowable<PersistentAuditEvent> events() {
+        return processor.onBackpressureBuffer(SUBSCRIBER_BUFFER_SIZE, dropped::mark,
+            BackpressureOverflowStrategy.DROP_OLDEST);
+    }
+}
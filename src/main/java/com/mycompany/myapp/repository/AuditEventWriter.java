@@ -0,0 +1,204 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes the audit events to the database.
+ * <p>
+ * When application.audit.writer.async is set, the events are queued and a background task, on the thread of the
+ * auditWriterTaskExecutor, writes them in batches, each in a single transaction, so that Hibernate sends their inserts
+ * in JDBC batches. The queue is flushed on shutdown. Otherwise each event is written right away, in its own transaction.
+ */
+@Component
+public class AuditEventWriter {
+
+    private static final String PROP_METRIC_REG_AUDIT_WRITER = "audit.writer";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Audit.Writer properties;
+
+    private final TaskExecutor taskExecutor;
+
+    private final BlockingQueue<PersistentAuditEvent> queue;
+
+    private final Meter dropped;
+
+    private final Meter written;
+
+    private final Meter failed;
+
+    private final Timer flushes;
+
+    private volatile boolean running;
+
+    /**
+     * Read locked to queue an event, and write locked by stop(), so that no event is queued once the background task
+     * may have seen the writer stopped and the queue empty.
+     */
+    private final ReadWriteLock queueing = new ReentrantReadWriteLock();
+
+    private CountDownLatch drained;
+
+    public AuditEventWriter(PersistenceAuditEventRepository persistenceAuditEventRepository,
+                            PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                            MetricRegistry metricRegistry, @Qualifier("auditWriterTaskExecutor") TaskExecutor taskExecutor) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Rolling back the transaction of the audited thread must not roll back its audit event
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getAudit().getWriter();
+        this.taskExecutor = taskExecutor;
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.dropped = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_AUDIT_WRITER, "dropped"));
+        this.written = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_AUDIT_WRITER, "written"));
+        this.failed = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_AUDIT_WRITER, "failed"));
+        this.flushes = metricRegistry.timer(MetricRegistry.name(PROP_METRIC_REG_AUDIT_WRITER, "flushes"));
+        metricRegistry.register(MetricRegistry.name(PROP_METRIC_REG_AUDIT_WRITER, "queue-size"),
+            (Gauge<Integer>) queue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.isAsync()) {
+            log.debug("Starting the asynchronous audit event writer");
+            running = true;
+            drained = new CountDownLatch(1);
+            taskExecutor.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    drained.countDown();
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (drained != null) {
+            Lock lock = queueing.writeLock();
+            lock.lock();
+            try {
+                log.debug("Stopping the asynchronous audit event writer, {} events to flush", queue.size());
+                running = false;
+            } finally {
+                lock.unlock();
+            }
+            drained.await();
+            drained = null;
+        }
+    }
+
+    /**
+     * Write an audit event, or queue it when the writer is asynchronous.
+     *
+     * @param persistentAuditEvent the event to write
+     */
+    public void write(PersistentAuditEvent persistentAuditEvent) {
+        if (!queue(persistentAuditEvent)) {
+            flush(Collections.singletonList(persistentAuditEvent));
+        }
+    }
+
+    /**
+     * @return false when the writer isn't running, and the event must be written right away
+     */
+    private boolean queue(PersistentAuditEvent persistentAuditEvent) {
+        Lock lock = queueing.readLock();
+        lock.lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            if (properties.getOverflowPolicy() == ApplicationProperties.Audit.Writer.OverflowPolicy.BLOCK) {
+                try {
+                    queue.put(persistentAuditEvent);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.mark();
+                }
+            } else if (!queue.offer(persistentAuditEvent)) {
+                dropped.mark();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<PersistentAuditEvent> batch = new ArrayList<>(properties.getBatchSize());
+        // Keeps going after stop() until the queue is empty, so that no event is lost on shutdown
+        while (running || !queue.isEmpty()) {
+            try {
+                PersistentAuditEvent first = queue.poll(properties.getFlushInterval(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushInterval());
+                while (batch.size() < properties.getBatchSize()) {
+                    queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == properties.getBatchSize() || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PersistentAuditEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Audit event writer interrupted, {} events not written", queue.size() + batch.size());
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PersistentAuditEvent> batch) {
+        try (Timer.Context ignored = flushes.time()) {
+            transactionTemplate.execute(status -> persistenceAuditEventRepository.save(batch));
+            written.mark(batch.size());
+        } catch (RuntimeException e) {
+            failed.mark(batch.size());
+            log.error("Couldn't write {} audit events", batch.size(), e);
+        }
+    }
+}
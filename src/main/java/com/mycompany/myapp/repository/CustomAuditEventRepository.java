@@ -8,9 +8,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.HashMap;
@@ -21,6 +20,7 @@ import java.util.Map;
  * An implementation of Spring Boot's AuditEventRepository.
  */
 @Repository
+@Profile("!" + Constants.SPRING_PROFILE_AUDIT_LOG)
 public class CustomAuditEventRepository implements AuditEventRepository {
 
     private static final String AUTHORIZATION_FAILURE = "AUTHORIZATION_FAILURE";
@@ -34,13 +34,20 @@ public class CustomAuditEventRepository implements AuditEventRepository {
 
     private final AuditEventConverter auditEventConverter;
 
+    private final AuditEventWriter auditEventWriter;
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     public CustomAuditEventRepository(PersistenceAuditEventRepository persistenceAuditEventRepository,
-            AuditEventConverter auditEventConverter) {
+            AuditEventConverter auditEventConverter, AuditEventWriter auditEventWriter,
+            AuditEventBroadcaster auditEventBroadcaster) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.auditEventWriter = auditEventWriter;
+        this.auditEventBroadcaster = auditEventBroadcaster;
     }
 
     @Override
@@ -72,21 +79,26 @@ public class CustomAuditEventRepository implements AuditEventRepository {
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void add(AuditEvent event) {
         if (!AUTHORIZATION_FAILURE.equals(event.getType()) &&
             !Constants.ANONYMOUS_USER.equals(event.getPrincipal())) {
 
-            PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
-            persistentAuditEvent.setPrincipal(event.getPrincipal());
-            persistentAuditEvent.setAuditEventType(event.getType());
-            persistentAuditEvent.setAuditEventDate(event.getTimestamp().toInstant());
-            Map<String, String> eventData = auditEventConverter.convertDataToStrings(event.getData());
-            persistentAuditEvent.setData(truncate(eventData));
-            persistenceAuditEventRepository.save(persistentAuditEvent);
+            Map<String, String> eventData = truncate(auditEventConverter.convertDataToStrings(event.getData()));
+            auditEventWriter.write(toPersistentAuditEvent(event, eventData));
+            // A distinct instance, since the written one is changed by Hibernate in the writer thread
+            auditEventBroadcaster.publish(toPersistentAuditEvent(event, eventData));
         }
     }
 
+    private static PersistentAuditEvent toPersistentAuditEvent(AuditEvent event, Map<String, String> eventData) {
+        PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
+        persistentAuditEvent.setPrincipal(event.getPrincipal());
+        persistentAuditEvent.setAuditEventType(event.getType());
+        persistentAuditEvent.setAuditEventDate(event.getTimestamp().toInstant());
+        persistentAuditEvent.setData(new HashMap<>(eventData));
+        return persistentAuditEvent;
+    }
+
     /**
      * Truncate event data that might exceed column length.
      */
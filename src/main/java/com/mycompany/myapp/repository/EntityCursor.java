@@ -0,0 +1,135 @@
+package com.mycompany.myapp.repository;
+
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.TypedQuery;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * A forward-only cursor over the results of a JPA query, backed by Hibernate's ScrollableResults.
+ * <p>
+ * Rows are fetched from the database in chunks of {@link #FETCH_SIZE}, only when they are read.
+ * Outside of a Spring managed transaction, the cursor uses its own EntityManager and read-only
+ * transaction, which stay open until the cursor is closed: it can then be consumed lazily, from any
+ * thread, but not concurrently.
+ * <p>
+ * The persistence context is cleared every {@link #FETCH_SIZE} rows, so entities returned by the
+ * cursor must be used (including their lazy associations) before that.
+ */
+public class EntityCursor<T> implements Iterator<T>, AutoCloseable {
+
+    public static final int FETCH_SIZE = 100;
+
+    private final EntityManager entityManager;
+
+    private final boolean ownEntityManager;
+
+    private final ScrollableResults results;
+
+    private int position;
+
+    private T next;
+
+    private boolean done;
+
+    private boolean closed;
+
+    private EntityCursor(EntityManager entityManager, boolean ownEntityManager, ScrollableResults results) {
+        this.entityManager = entityManager;
+        this.ownEntityManager = ownEntityManager;
+        this.results = results;
+    }
+
+    /**
+     * Open a cursor over a JPA query.
+     *
+     * @param entityManagerFactory the factory used to create the EntityManager, when no transaction is active
+     * @param queryBuilder a function building the query to run with the given EntityManager
+     * @return the opened cursor, which must be closed by the caller
+     */
+    static <T> EntityCursor<T> open(EntityManagerFactory entityManagerFactory,
+                                    Function<EntityManager, TypedQuery<T>> queryBuilder) {
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        boolean ownEntityManager = entityManager == null;
+        if (ownEntityManager) {
+            entityManager = entityManagerFactory.createEntityManager();
+        }
+        try {
+            if (ownEntityManager) {
+                Session session = entityManager.unwrap(Session.class);
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+                entityManager.getTransaction().begin();
+            }
+            ScrollableResults results = queryBuilder.apply(entityManager)
+                .unwrap(Query.class)
+                .setFetchSize(FETCH_SIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+            return new EntityCursor<>(entityManager, ownEntityManager, results);
+        } catch (RuntimeException e) {
+            if (ownEntityManager) {
+                entityManager.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        if (next == null && !done) {
+            if (ownEntityManager && position > 0 && position % FETCH_SIZE == 0) {
+                entityManager.clear();
+            }
+            if (results.next()) {
+                next = (T) results.get(0);
+                position++;
+            } else {
+                done = true;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        done = true;
+        next = null;
+        try {
+            results.close();
+        } finally {
+            if (ownEntityManager && entityManager.isOpen()) {
+                EntityTransaction transaction = entityManager.getTransaction();
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                entityManager.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.domain.MailMessage;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the MailMessage entity.
+ */
+public interface MailMessageRepository extends JpaRepository<MailMessage, Long> {
+
+    /**
+     * The messages are locked until the end of the transaction, so that two dispatchers sharing the database don't
+     * claim them both.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<MailMessage> findAllByNextAttemptDateLessThanEqual(Instant date, Pageable pageable);
+
+    /**
+     * The messages are locked until the end of the transaction, so that they are not claimed again meanwhile.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<MailMessage> findAllByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,44 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+
+/**
+ * Custom methods of the PersistenceAuditEventRepository, for streaming audit events through a database cursor and
+ * managing the monthly partitions of the audit event table.
+ */
+public interface PersistenceAuditEventRepositoryCustom {
+
+    /**
+     * Open a cursor over a page of audit events, without running a count query.
+     *
+     * @param fromDate the lower bound of the event date, or null for no lower bound
+     * @param toDate the upper bound of the event date, or null for no upper bound
+     * @param pageable the offset, size and sort of the page, the events being sorted by id when it has no sort
+     * @return the opened cursor, which must be closed by the caller
+     */
+    EntityCursor<PersistentAuditEvent> streamAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable);
+
+    /**
+     * Split the partitions of the audit event table by month, until the month containing the given date.
+     * <p>
+     * This does nothing when the table isn't partitioned, which is only the case on MySQL. It must not be called
+     * within a transaction, which would be committed by the alter table statements.
+     *
+     * @param until the date whose month must have its own partition
+     */
+    void addPartitionsUntil(Instant until);
+
+    /**
+     * Remove the audit events, and their data, older than the given date.
+     * <p>
+     * When the table is partitioned, the monthly partitions ending before the date are dropped instead of deleting
+     * their events one by one, so that the events of the partition containing the date are kept. It must then not be
+     * called within a transaction, which would be committed by the alter table statement.
+     *
+     * @param before the date before which the events are removed
+     */
+    void removeAllByAuditEventDateBefore(Instant before);
+}
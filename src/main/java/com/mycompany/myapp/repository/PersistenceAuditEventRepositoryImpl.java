@@ -0,0 +1,184 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the custom methods of the PersistenceAuditEventRepository.
+ */
+public class PersistenceAuditEventRepositoryImpl implements PersistenceAuditEventRepositoryCustom {
+
+    /**
+     * Partition holding the events after the last monthly partition, split by addPartitionsUntil.
+     */
+    private static final String FUTURE_PARTITION = "p_future";
+
+    private static final DateTimeFormatter PARTITION_NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final Logger log = LoggerFactory.getLogger(PersistenceAuditEventRepositoryImpl.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public PersistenceAuditEventRepositoryImpl(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate,
+                                               PlatformTransactionManager transactionManager) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public EntityCursor<PersistentAuditEvent> streamAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable) {
+        return EntityCursor.open(entityManagerFactory, entityManager -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<PersistentAuditEvent> query = cb.createQuery(PersistentAuditEvent.class);
+            Root<PersistentAuditEvent> event = query.from(PersistentAuditEvent.class);
+            List<Predicate> predicates = new ArrayList<>();
+            if (fromDate != null) {
+                predicates.add(cb.greaterThanOrEqualTo(event.get("auditEventDate"), fromDate));
+            }
+            if (toDate != null) {
+                predicates.add(cb.lessThanOrEqualTo(event.get("auditEventDate"), toDate));
+            }
+            query.select(event).where(predicates.toArray(new Predicate[predicates.size()]));
+            if (pageable.getSort() != null) {
+                query.orderBy(QueryUtils.toOrders(pageable.getSort(), event, cb));
+            } else {
+                query.orderBy(cb.asc(event.get("id")));
+            }
+            return entityManager.createQuery(query)
+                .setFirstResult(pageable.getOffset())
+                .setMaxResults(pageable.getPageSize());
+        });
+    }
+
+    @Override
+    public void addPartitionsUntil(Instant until) {
+        List<Partition> partitions = findPartitions();
+        if (partitions.isEmpty()) {
+            return;
+        }
+        for (Partition partition : newPartitions(partitions, Instant.now(), until)) {
+            log.debug("Adding the audit event partition {}", partition.name);
+            jdbcTemplate.execute("alter table jhi_persistent_audit_event reorganize partition " + FUTURE_PARTITION +
+                " into (partition " + partition.name + " values less than (" + partition.upperBound + "), " +
+                "partition " + FUTURE_PARTITION + " values less than maxvalue)");
+        }
+    }
+
+    /**
+     * The monthly partitions to split from p_future, so that the partitions cover the events until the given time.
+     *
+     * @param partitions the current partitions, in order, the last one being the unbounded p_future
+     * @param now the current time
+     * @param until the time until which the events must have a monthly partition
+     * @return the partitions to add, in order
+     */
+    static List<Partition> newPartitions(List<Partition> partitions, Instant now, Instant until) {
+        // The partitions are ranges of UNIX_TIMESTAMP(event_date)
+        Instant upperBound = partitions.stream()
+            .map(partition -> partition.upperBound)
+            .filter(Objects::nonNull)
+            .reduce((first, second) -> second)
+            .map(Instant::ofEpochSecond)
+            // Every monthly partition was dropped, after a downtime longer than the retention: restart from this month
+            .orElseGet(() -> YearMonth.from((until.isBefore(now) ? until : now).atZone(ZoneOffset.UTC))
+                .atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        List<Partition> newPartitions = new ArrayList<>();
+        while (!upperBound.isAfter(until)) {
+            YearMonth month = YearMonth.from(upperBound.atZone(ZoneOffset.UTC));
+            Instant nextUpperBound = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            newPartitions.add(new Partition(month.format(PARTITION_NAME_FORMAT), nextUpperBound.getEpochSecond()));
+            upperBound = nextUpperBound;
+        }
+        return newPartitions;
+    }
+
+    @Override
+    public void removeAllByAuditEventDateBefore(Instant before) {
+        List<Partition> partitions = findPartitions();
+        if (partitions.isEmpty()) {
+            Timestamp timestamp = Timestamp.from(before);
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.update("delete from jhi_persistent_audit_evt_data where event_id in " +
+                    "(select event_id from jhi_persistent_audit_event where event_date < ?)", timestamp);
+                return jdbcTemplate.update("delete from jhi_persistent_audit_event where event_date < ?", timestamp);
+            });
+            return;
+        }
+        String expired = partitions.stream()
+            .filter(partition -> partition.upperBound != null && partition.upperBound <= before.getEpochSecond())
+            .map(partition -> partition.name)
+            .collect(Collectors.joining(", "));
+        if (expired.isEmpty()) {
+            return;
+        }
+        log.debug("Dropping the audit event partitions {}", expired);
+        Long maxEventId = jdbcTemplate.queryForObject(
+            "select max(event_id) from jhi_persistent_audit_event partition (" + expired + ")", Long.class);
+        jdbcTemplate.execute("alter table jhi_persistent_audit_event drop partition " + expired);
+        if (maxEventId != null) {
+            // A partitioned table can't be referenced by a foreign key, so the data of the dropped events is left over
+            jdbcTemplate.update("delete d from jhi_persistent_audit_evt_data d " +
+                "left join jhi_persistent_audit_event e on e.event_id = d.event_id " +
+                "where d.event_id <= ? and e.event_id is null", maxEventId);
+        }
+    }
+
+    private List<Partition> findPartitions() {
+        String databaseProductName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equals(databaseProductName)) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.query("select partition_name, partition_description from information_schema.partitions " +
+                "where table_schema = database() and table_name = 'jhi_persistent_audit_event' " +
+                "and partition_name is not null order by partition_ordinal_position",
+            (resultSet, rowNum) -> new Partition(resultSet.getString(1), resultSet.getString(2)));
+    }
+
+    static class Partition {
+
+        final String name;
+
+        /**
+         * Exclusive upper bound of the partition, in seconds since the epoch, or null for MAXVALUE.
+         */
+        final Long upperBound;
+
+        Partition(String name, String description) {
+            this(name, "MAXVALUE".equals(description) ? null : Long.valueOf(description));
+        }
+
+        Partition(String name, Long upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+    }
+}
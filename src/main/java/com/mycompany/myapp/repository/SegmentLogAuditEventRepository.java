@@ -0,0 +1,531 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.config.Constants;
+import com.mycompany.myapp.config.audit.AuditEventConverter;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import com.mycompany.myapp.grpc.AuditEvent;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Timestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An implementation of Spring Boot's AuditEventRepository, storing the audit events in local append-only segment files
+ * instead of the database.
+ * <p>
+ * Each record is a protobuf encoded AuditEvent, prefixed by its length and its append time. The append time is the
+ * timestamp of the event, raised to the one of the previous record when events are added out of order, so that it
+ * only grows. A sparse index of the append times lets date range queries start right before their first event, and
+ * the segments are read memory-mapped. Expired segments are deleted as a whole.
+ * <p>
+ * The appends are forced to disk every application.audit.segment-log.flush-events events, and at least every
+ * application.audit.segment-log.flush-interval: the events of this window can be lost when the host crashes, not when
+ * the application does. A record partially written by a crash is truncated when the log is opened again.
+ * <p>
+ * Enabled by the audit-log profile, in place of the CustomAuditEventRepository.
+ */
+@Repository
+@Profile(Constants.SPRING_PROFILE_AUDIT_LOG)
+public class SegmentLogAuditEventRepository implements AuditEventRepository {
+
+    private static final String AUTHORIZATION_FAILURE = "AUTHORIZATION_FAILURE";
+
+    private static final String LOG_SUFFIX = ".log";
+
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Length of the event, and its append time in milliseconds since the epoch.
+     */
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Append time of a record, and its position in the segment.
+     */
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Logger log = LoggerFactory.getLogger(SegmentLogAuditEventRepository.class);
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ApplicationProperties.Audit properties;
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
+    /**
+     * The segments in append order, the last one being appended to.
+     */
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    private Path directory;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Number of events appended to the last segment since it was forced to disk.
+     */
+    private int unflushedEvents;
+
+    public SegmentLogAuditEventRepository(AuditEventConverter auditEventConverter,
+                                          ApplicationProperties applicationProperties,
+                                          AuditEventBroadcaster auditEventBroadcaster) {
+        this.auditEventConverter = auditEventConverter;
+        this.properties = applicationProperties.getAudit();
+        this.auditEventBroadcaster = auditEventBroadcaster;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        directory = Paths.get(properties.getSegmentLog().getDirectory());
+        Files.createDirectories(directory);
+        List<Path> logFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            logFiles = files
+                .filter(file -> file.getFileName().toString().endsWith(LOG_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        for (Path logFile : logFiles) {
+            String name = logFile.getFileName().toString();
+            segments.add(new Segment(directory, Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()))));
+        }
+        if (segments.isEmpty()) {
+            segments.add(new Segment(directory, 0));
+        }
+        lastTimestamp = segments.get(segments.size() - 1).recover();
+        // The last segment is empty when it was rolled right before a stop, the append times go on from the previous one
+        for (int i = segments.size() - 2; i >= 0 && lastTimestamp == Long.MIN_VALUE; i--) {
+            lastTimestamp = segments.get(i).lastAppendTime();
+        }
+        log.debug("Opened the audit event log {} with {} segments", directory, segments.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (!segments.isEmpty()) {
+            flush();
+        }
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    @Override
+    public List<org.springframework.boot.actuate.audit.AuditEvent> find(Date after) {
+        return find(null, after, null);
+    }
+
+    @Override
+    public List<org.springframework.boot.actuate.audit.AuditEvent> find(String principal, Date after) {
+        return find(principal, after, null);
+    }
+
+    @Override
+    public List<org.springframework.boot.actuate.audit.AuditEvent> find(String principal, Date after, String type) {
+        List<org.springframework.boot.actuate.audit.AuditEvent> results = new ArrayList<>();
+        Records records = new Records(new ArrayList<>(segments), after == null ? Long.MIN_VALUE : after.getTime() + 1,
+            Long.MAX_VALUE, Long.MAX_VALUE);
+        while (records.hasNext()) {
+            AuditEvent event = records.next();
+            if ((principal == null || principal.equals(event.getPrincipal())) &&
+                (type == null || type.equals(event.getType()))) {
+                Timestamp timestamp = event.getTimestamp();
+                results.add(new org.springframework.boot.actuate.audit.AuditEvent(
+                    Date.from(Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos())),
+                    event.getPrincipal(), event.getType(), auditEventConverter.convertDataToObjects(event.getDataMapMap())));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized void add(org.springframework.boot.actuate.audit.AuditEvent event) {
+        if (AUTHORIZATION_FAILURE.equals(event.getType()) || Constants.ANONYMOUS_USER.equals(event.getPrincipal())) {
+            return;
+        }
+        Instant instant = event.getTimestamp().toInstant();
+        Map<String, String> eventData = auditEventConverter.convertDataToStrings(event.getData());
+        AuditEvent auditEvent = AuditEvent.newBuilder()
+            .setTimestamp(Timestamp.newBuilder().setSeconds(instant.getEpochSecond()).setNanos(instant.getNano()))
+            .setPrincipal(event.getPrincipal())
+            .setType(event.getType())
+            .putAllDataMap(eventData)
+            .build();
+        byte[] body = auditEvent.toByteArray();
+        lastTimestamp = Math.max(lastTimestamp, instant.toEpochMilli());
+        try {
+            Segment segment = segments.get(segments.size() - 1);
+            if (segment.size > 0 && segment.size + RECORD_HEADER_SIZE + body.length > properties.getSegmentLog().getSegmentSize()) {
+                segment.force();
+                unflushedEvents = 0;
+                segment = new Segment(directory, segment.baseOffset + segment.size);
+                segments.add(segment);
+            }
+            segment.append(lastTimestamp, body, properties.getSegmentLog().getIndexInterval());
+            if (++unflushedEvents >= properties.getSegmentLog().getFlushEvents()) {
+                segment.force();
+                unflushedEvents = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't append the audit event to " + directory, e);
+        }
+        PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
+        persistentAuditEvent.setPrincipal(event.getPrincipal());
+        persistentAuditEvent.setAuditEventType(event.getType());
+        persistentAuditEvent.setAuditEventDate(instant);
+        persistentAuditEvent.setData(eventData);
+        auditEventBroadcaster.publish(persistentAuditEvent);
+    }
+
+    /**
+     * Iterate over a page of the audit events appended between two dates, in append order, without a count query.
+     * <p>
+     * The events are read from the memory-mapped segments as they are iterated over, and the sort of the page is
+     * ignored, since they can only be read in append order.
+     *
+     * @param fromDate the lower bound of the append time, or null for no lower bound
+     * @param toDate the upper bound of the append time, or null for no upper bound
+     * @param pageable the offset and size of the page
+     * @return the iterator over the events of the page
+     */
+    public Iterator<AuditEvent> streamAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable) {
+        Records records = new Records(new ArrayList<>(segments),
+            fromDate == null ? Long.MIN_VALUE : fromDate.toEpochMilli(),
+            toDate == null ? Long.MAX_VALUE : toDate.toEpochMilli(),
+            pageable.getPageSize());
+        records.skip(pageable.getOffset());
+        return records;
+    }
+
+    /**
+     * Force the events appended since the last flush to disk.
+     * <p>
+     * This is scheduled to get fired every application.audit.segment-log.flush-interval.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.segment-log.flush-interval:1000}")
+    public synchronized void flush() throws IOException {
+        if (unflushedEvents > 0) {
+            segments.get(segments.size() - 1).force();
+            unflushedEvents = 0;
+        }
+    }
+
+    /**
+     * Segments whose events are all older than the retention period should be deleted.
+     * <p>
+     * This is scheduled to get fired everyday, at 01:30 (am).
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    public synchronized void removeOldSegments() throws IOException {
+        long before = Instant.now().minus(properties.getRetentionDays(), ChronoUnit.DAYS).toEpochMilli();
+        // The segment being appended to is always kept, and the events of a segment are older than the next one's
+        while (segments.size() > 1 && segments.get(1).firstTimestamp() < before) {
+            Segment segment = segments.remove(0);
+            log.debug("Deleting the audit event segment {}", segment.logFile);
+            segment.delete();
+        }
+    }
+
+    /**
+     * A segment file, and its sparse index file, named after the position of the segment in the whole log.
+     */
+    private final class Segment {
+
+        private final long baseOffset;
+
+        private final Path logFile;
+
+        private final Path indexFile;
+
+        private final FileChannel logChannel;
+
+        private final FileChannel indexChannel;
+
+        private long[] indexTimestamps;
+
+        private int[] indexPositions;
+
+        private int indexCount;
+
+        private long lastAppendTime = Long.MIN_VALUE;
+
+        /**
+         * Size of the records fully written, which the readers can map.
+         */
+        private volatile int size;
+
+        Segment(Path directory, long baseOffset) throws IOException {
+            this.baseOffset = baseOffset;
+            this.logFile = directory.resolve(String.format("%020d%s", baseOffset, LOG_SUFFIX));
+            this.indexFile = directory.resolve(String.format("%020d%s", baseOffset, INDEX_SUFFIX));
+            this.logChannel = FileChannel.open(logFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = (int) logChannel.size();
+            int entries = (int) (indexChannel.size() / INDEX_ENTRY_SIZE);
+            this.indexTimestamps = new long[Math.max(entries, 16)];
+            this.indexPositions = new int[Math.max(entries, 16)];
+            if (entries > 0) {
+                MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, entries * INDEX_ENTRY_SIZE);
+                for (int i = 0; i < entries; i++) {
+                    long timestamp = index.getLong();
+                    int position = index.getInt();
+                    // The index is written after the log, so it can't point past the end of the log
+                    if (position < size) {
+                        indexTimestamps[indexCount] = timestamp;
+                        indexPositions[indexCount++] = position;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Truncate a record partially written by a crash, and the index entries pointing to it.
+         *
+         * @return the append time of the last record, or Long.MIN_VALUE for an empty segment
+         */
+        long recover() throws IOException {
+            int position = scan();
+            if (position < size) {
+                log.warn("Truncating the audit event segment {} from {} to {} bytes", logFile, size, position);
+                logChannel.truncate(position);
+                size = position;
+            }
+            indexChannel.truncate((long) indexCount * INDEX_ENTRY_SIZE);
+            return lastAppendTime;
+        }
+
+        /**
+         * @return the append time of the last record, or Long.MIN_VALUE for an empty segment
+         */
+        long lastAppendTime() throws IOException {
+            scan();
+            return lastAppendTime;
+        }
+
+        /**
+         * Read the records from the last index entry on, up to the end of the segment or a partially written record,
+         * keeping the append time of the last one.
+         *
+         * @return the end position of the last complete record
+         */
+        private int scan() throws IOException {
+            int position = indexCount == 0 ? 0 : indexPositions[indexCount - 1];
+            lastAppendTime = Long.MIN_VALUE;
+            MappedByteBuffer records = logChannel.map(FileChannel.MapMode.READ_ONLY, position, size - position);
+            while (records.remaining() >= RECORD_HEADER_SIZE) {
+                int length = records.getInt();
+                long recordTimestamp = records.getLong();
+                if (length < 0 || length > records.remaining()) {
+                    break;
+                }
+                records.position(records.position() + length);
+                lastAppendTime = recordTimestamp;
+                position += RECORD_HEADER_SIZE + length;
+            }
+            return position;
+        }
+
+        /**
+         * Force the log, then the index which can't point past the end of the log, to disk.
+         */
+        void force() throws IOException {
+            logChannel.force(false);
+            indexChannel.force(false);
+        }
+
+        void append(long timestamp, byte[] body, int indexInterval) throws IOException {
+            int position = size;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+            record.putInt(body.length).putLong(timestamp).put(body).flip();
+            while (record.hasRemaining()) {
+                logChannel.write(record, position + record.position());
+            }
+            synchronized (this) {
+                if (indexCount == 0 || position - indexPositions[indexCount - 1] >= indexInterval) {
+                    ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+                    entry.putLong(timestamp).putInt(position).flip();
+                    while (entry.hasRemaining()) {
+                        indexChannel.write(entry, (long) indexCount * INDEX_ENTRY_SIZE + entry.position());
+                    }
+                    if (indexCount == indexTimestamps.length) {
+                        indexTimestamps = Arrays.copyOf(indexTimestamps, indexCount * 2);
+                        indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+                    }
+                    indexTimestamps[indexCount] = timestamp;
+                    indexPositions[indexCount++] = position;
+                }
+            }
+            size = position + record.limit();
+        }
+
+        /**
+         * @return the position of a record at or before the first one appended at or after the given time
+         */
+        synchronized int lookup(long timestamp) {
+            int low = 0;
+            int high = indexCount - 1;
+            int position = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (indexTimestamps[middle] < timestamp) {
+                    position = indexPositions[middle];
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return position;
+        }
+
+        synchronized long firstTimestamp() {
+            return indexCount == 0 ? Long.MAX_VALUE : indexTimestamps[0];
+        }
+
+        void close() throws IOException {
+            logChannel.close();
+            indexChannel.close();
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    /**
+     * Reads the records appended between two times, one memory-mapped segment after the other.
+     */
+    private static final class Records implements Iterator<AuditEvent> {
+
+        private final List<Segment> segments;
+
+        private final long fromTimestamp;
+
+        private final long toTimestamp;
+
+        private long remaining;
+
+        private int segmentIndex;
+
+        private ByteBuffer buffer;
+
+        private ByteBuffer next;
+
+        private boolean done;
+
+        Records(List<Segment> segments, long fromTimestamp, long toTimestamp, long limit) {
+            this.segments = segments;
+            this.fromTimestamp = fromTimestamp;
+            this.toTimestamp = toTimestamp;
+            this.remaining = limit;
+        }
+
+        void skip(long count) {
+            for (long i = 0; i < count && advance(); i++) {
+                next = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 && advance();
+        }
+
+        @Override
+        public AuditEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ByteBuffer body = next;
+            next = null;
+            remaining--;
+            try {
+                return AuditEvent.parseFrom(CodedInputStream.newInstance(body));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Couldn't read an audit event", e);
+            }
+        }
+
+        /**
+         * Find the body of the next record in the time range, without decoding it.
+         */
+        private boolean advance() {
+            while (next == null && !done) {
+                if (buffer == null || buffer.remaining() < RECORD_HEADER_SIZE) {
+                    buffer = mapNextSegment();
+                    continue;
+                }
+                int length = buffer.getInt();
+                long timestamp = buffer.getLong();
+                if (timestamp > toTimestamp) {
+                    // The append times only grow, so no later record is in the range
+                    done = true;
+                } else if (timestamp < fromTimestamp) {
+                    buffer.position(buffer.position() + length);
+                } else {
+                    next = buffer.slice();
+                    next.limit(length);
+                    buffer.position(buffer.position() + length);
+                }
+            }
+            return next != null;
+        }
+
+        private ByteBuffer mapNextSegment() {
+            while (segmentIndex < segments.size()) {
+                Segment segment = segments.get(segmentIndex++);
+                // Skip the segments whose records are all appended before the time range
+                if (segmentIndex < segments.size() && segments.get(segmentIndex).firstTimestamp() < fromTimestamp) {
+                    continue;
+                }
+                int size = segment.size;
+                int position = segment.lookup(fromTimestamp);
+                try {
+                    return segment.logChannel.map(FileChannel.MapMode.READ_ONLY, position, size - position);
+                } catch (ClosedChannelException e) {
+                    // Deleted since the iteration started, as all its events expired
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Couldn't map the audit event segment " + segment.logFile, e);
+                }
+            }
+            done = true;
+            return null;
+        }
+    }
+}
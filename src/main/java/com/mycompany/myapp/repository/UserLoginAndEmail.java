@@ -0,0 +1,13 @@
+package com.mycompany.myapp.repository;
+
+/**
+ * Projection of a User on its unique keys, used to check their availability without loading the entity.
+ */
+public interface UserLoginAndEmail {
+
+    Long getId();
+
+    String getLogin();
+
+    String getEmail();
+}
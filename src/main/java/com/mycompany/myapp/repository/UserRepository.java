@@ -1,12 +1,14 @@
 package com.mycompany.myapp.repository;
 
 import com.mycompany.myapp.domain.User;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.time.Instant;
@@ -15,7 +17,7 @@ import java.time.Instant;
  * Spring Data JPA repository for the User entity.
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     Optional<User> findOneByActivationKey(String activationKey);
 
@@ -27,12 +29,39 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findOneByLogin(String login);
 
+    /**
+     * Find, in a single query, the users holding the given login or email.
+     *
+     * @param login the login, which must be lowercase
+     * @param email the email, compared ignoring case
+     * @return at most two users: the one holding the login and the one holding the email
+     */
+    @Query("select u.id as id, u.login as login, u.email as email from User u " +
+        "where u.login = :login or lower(u.email) = lower(:email)")
+    List<UserLoginAndEmail> findAllLoginAndEmailByLoginOrEmail(@Param("login") String login, @Param("email") String email);
+
+    /**
+     * Find, in a single query, the users holding any of the given logins or emails.
+     *
+     * @param logins the logins, which must be lowercase
+     * @param emails the emails, which must be lowercase
+     * @return the users holding one of the logins or one of the emails
+     */
+    @Query("select u.id as id, u.login as login, u.email as email from User u " +
+        "where u.login in :logins or lower(u.email) in :emails")
+    List<UserLoginAndEmail> findAllLoginAndEmailByLoginInOrEmailIn(@Param("logins") Collection<String> logins,
+                                                                    @Param("emails") Collection<String> emails);
+
     @EntityGraph(attributePaths = "authorities")
     User findOneWithAuthoritiesById(Long id);
 
     @EntityGraph(attributePaths = "authorities")
-    @Cacheable(cacheNames="users")
     Optional<User> findOneWithAuthoritiesByLogin(String login);
 
+    @EntityGraph(attributePaths = "authorities")
+    Optional<User> findOneWithAuthoritiesByEmailIgnoreCase(String email);
+
     Page<User> findAllByLoginNot(Pageable pageable, String login);
+
+    List<User> findAllByIdGreaterThanAndLoginNot(Pageable pageable, Long id, String login);
 }
@@ -0,0 +1,19 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.domain.User;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Custom methods of the UserRepository, for streaming users through a database cursor.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Open a cursor over a page of users, without running a count query.
+     *
+     * @param pageable the offset, size and sort of the page
+     * @param login the login to exclude
+     * @return the opened cursor, which must be closed by the caller
+     */
+    EntityCursor<User> streamAllByLoginNot(Pageable pageable, String login);
+}
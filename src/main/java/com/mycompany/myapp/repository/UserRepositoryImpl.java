@@ -0,0 +1,38 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.domain.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+/**
+ * Implementation of the custom methods of the UserRepository.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public UserRepositoryImpl(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public EntityCursor<User> streamAllByLoginNot(Pageable pageable, String login) {
+        return EntityCursor.open(entityManagerFactory, entityManager -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<User> query = cb.createQuery(User.class);
+            Root<User> user = query.from(User.class);
+            query.select(user).where(cb.notEqual(user.get("login"), login));
+            if (pageable.getSort() != null) {
+                query.orderBy(QueryUtils.toOrders(pageable.getSort(), user, cb));
+            }
+            return entityManager.createQuery(query)
+                .setFirstResult(pageable.getOffset())
+                .setMaxResults(pageable.getPageSize());
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package com.mycompany.myapp.security.jwt;
+
+import org.springframework.security.core.Authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the authentications of already validated tokens.
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the token, so that the cache doesn't hold the tokens themselves, and are
+ * evicted when their token expires or, when the cache is full, in least recently used order.
+ */
+class TokenAuthenticationCache {
+
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries;
+
+    TokenAuthenticationCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TokenAuthenticationCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the authentication of the token, or null if the token is not cached or has expired
+     */
+    Authentication get(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiration <= now) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.authentication;
+        }
+    }
+
+    void put(String token, Authentication authentication, long expiration) {
+        if (expiration <= System.currentTimeMillis()) {
+            return;
+        }
+        String key = hash(token);
+        synchronized (entries) {
+            entries.put(key, new Entry(authentication, expiration));
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Authentication authentication;
+
+        private final long expiration;
+
+        private Entry(Authentication authentication, long expiration) {
+            this.authentication = authentication;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.mycompany.myapp.security.jwt;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import io.github.jhipster.config.JHipsterProperties;
 
 import java.util.*;
@@ -8,6 +11,7 @@ import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -24,6 +28,11 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String PROP_METRIC_REG_JWT_CACHE = "security.jwt.cache";
+
+    // Clients reuse their token for many requests, so this is a bound on the number of active clients
+    private static final int AUTHENTICATION_CACHE_MAX_ENTRIES = 10000;
+
     private String secretKey;
 
     private long tokenValidityInMilliseconds;
@@ -32,8 +41,27 @@ public class TokenProvider {
 
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final TokenAuthenticationCache authenticationCache;
+
+    private final Meter cacheHits;
+
+    private final Meter cacheMisses;
+
+    @Autowired
+    public TokenProvider(JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        this(jHipsterProperties, metricRegistry, AUTHENTICATION_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * @param authenticationCacheMaxEntries the number of cached authentications, 0 to parse every token
+     */
+    TokenProvider(JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry, int authenticationCacheMaxEntries) {
         this.jHipsterProperties = jHipsterProperties;
+        this.authenticationCache = new TokenAuthenticationCache(authenticationCacheMaxEntries);
+        this.cacheHits = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_JWT_CACHE, "hits"));
+        this.cacheMisses = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_JWT_CACHE, "misses"));
+        metricRegistry.register(MetricRegistry.name(PROP_METRIC_REG_JWT_CACHE, "size"),
+            (Gauge<Integer>) authenticationCache::size);
     }
 
     @PostConstruct
@@ -69,25 +97,45 @@ public class TokenProvider {
     }
 
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-            .setSigningKey(secretKey)
-            .parseClaimsJws(token)
-            .getBody();
-
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
-
-        User principal = new User(claims.getSubject(), "", authorities);
+        Authentication authentication = authenticationCache.get(token);
+        if (authentication == null) {
+            Claims claims = Jwts.parser()
+                .setSigningKey(secretKey)
+                .parseClaimsJws(token)
+                .getBody();
+            authentication = cacheAuthentication(token, claims);
+        }
+        return copyOf(authentication, token);
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    /**
+     * Validate a token and get its authentication, parsing and verifying the token at most once.
+     *
+     * @param token the JWT token
+     * @return the authentication of the token, or empty if the token is not valid
+     */
+    public Optional<Authentication> parseAuthentication(String token) {
+        Authentication authentication = authenticationCache.get(token);
+        if (authentication != null) {
+            cacheHits.mark();
+        } else {
+            cacheMisses.mark();
+            Optional<Claims> claims = parseClaims(token);
+            if (!claims.isPresent()) {
+                return Optional.empty();
+            }
+            authentication = cacheAuthentication(token, claims.get());
+        }
+        return Optional.of(copyOf(authentication, token));
     }
 
     public boolean validateToken(String authToken) {
+        return parseAuthentication(authToken).isPresent();
+    }
+
+    private Optional<Claims> parseClaims(String token) {
         try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(authToken);
-            return true;
+            return Optional.of(Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody());
         } catch (SignatureException e) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
@@ -104,6 +152,29 @@ public class TokenProvider {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
-        return false;
+        return Optional.empty();
+    }
+
+    private Authentication cacheAuthentication(String token, Claims claims) {
+        Collection<? extends GrantedAuthority> authorities =
+            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+
+        User principal = new User(claims.getSubject(), "", authorities);
+
+        // Without credentials, so that the cache doesn't hold the token: copyOf adds it back to each copy
+        Authentication authentication = new UsernamePasswordAuthenticationToken(principal, null, authorities);
+        if (claims.getExpiration() != null) {
+            authenticationCache.put(token, authentication, claims.getExpiration().getTime());
+        }
+        return authentication;
+    }
+
+    /**
+     * The cached authentication is shared by concurrent requests, so each one gets its own copy.
+     */
+    private static Authentication copyOf(Authentication authentication, String token) {
+        return new UsernamePasswordAuthenticationToken(authentication.getPrincipal(), token, authentication.getAuthorities());
     }
 }
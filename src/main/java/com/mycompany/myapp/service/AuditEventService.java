@@ -1,14 +1,20 @@
 package com.mycompany.myapp.service;
 
+import com.mycompany.myapp.config.ApplicationProperties;
 import com.mycompany.myapp.config.audit.AuditEventConverter;
 import com.mycompany.myapp.repository.PersistenceAuditEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
 /**
@@ -20,16 +26,22 @@ import java.util.Optional;
 @Transactional
 public class AuditEventService {
 
+    private final Logger log = LoggerFactory.getLogger(AuditEventService.class);
+
     private final PersistenceAuditEventRepository persistenceAuditEventRepository;
 
     private final AuditEventConverter auditEventConverter;
 
+    private final ApplicationProperties applicationProperties;
+
     public AuditEventService(
         PersistenceAuditEventRepository persistenceAuditEventRepository,
-        AuditEventConverter auditEventConverter) {
+        AuditEventConverter auditEventConverter,
+        ApplicationProperties applicationProperties) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.applicationProperties = applicationProperties;
     }
 
     public Page<AuditEvent> findAll(Pageable pageable) {
@@ -46,4 +58,21 @@ public class AuditEventService {
         return Optional.ofNullable(persistenceAuditEventRepository.findOne(id)).map
             (auditEventConverter::convertToAuditEvent);
     }
+
+    /**
+     * Audit events should be automatically deleted after the retention period, and the partition of the next month
+     * created ahead.
+     * <p>
+     * This is scheduled to get fired everyday, at 01:30 (am). It runs outside of any transaction, as altering the
+     * partitions commits the current transaction on MySQL.
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void removeOldAuditEvents() {
+        Instant now = Instant.now();
+        persistenceAuditEventRepository.addPartitionsUntil(now.plus(31, ChronoUnit.DAYS));
+        Instant before = now.minus(applicationProperties.getAudit().getRetentionDays(), ChronoUnit.DAYS);
+        log.debug("Deleting audit events before {}", before);
+        persistenceAuditEventRepository.removeAllByAuditEventDateBefore(before);
+    }
 }
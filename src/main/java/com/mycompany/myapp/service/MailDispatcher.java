@@ -0,0 +1,280 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.MailMessage;
+import com.mycompany.myapp.repository.MailMessageRepository;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.github.jhipster.config.JHipsterProperties;
+import org.apache.commons.lang3.CharEncoding;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the emails queued in the outbox table by the MailService.
+ * <p>
+ * When application.mail.enabled is set, a task on the thread of the mailDispatcherTaskExecutor polls the outbox every
+ * application.mail.poll-interval, and sends the due emails in batches of application.mail.batch-size, each batch over
+ * a single SMTP connection.
+ * <p>
+ * The emails of a batch are claimed in a short transaction, which leases them for application.mail.lease by moving
+ * their next attempt date, so that several instances can share the outbox. They are sent outside of any transaction,
+ * and updated in a second one, so that no database connection nor lock is held during the SMTP exchange. The emails of
+ * an instance which stopped while sending them are sent again when their lease expires.
+ * <p>
+ * A sent email is removed from the outbox. An email which couldn't be sent is retried with an exponential backoff,
+ * and abandoned after application.mail.max-attempts.
+ */
+@Component
+public class MailDispatcher {
+
+    private static final String PROP_METRIC_REG_MAIL_DISPATCHER = "mail.dispatcher";
+
+    private final Logger log = LoggerFactory.getLogger(MailDispatcher.class);
+
+    private final MailMessageRepository mailMessageRepository;
+
+    private final JavaMailSender javaMailSender;
+
+    private final JHipsterProperties jHipsterProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Mail properties;
+
+    private final Meter sent;
+
+    private final Meter failed;
+
+    private final Meter abandoned;
+
+    private final Timer batches;
+
+    private final TaskExecutor taskExecutor;
+
+    private final Object pollLock = new Object();
+
+    private volatile boolean running;
+
+    private CountDownLatch stopped;
+
+    public MailDispatcher(MailMessageRepository mailMessageRepository, JavaMailSender javaMailSender,
+                          JHipsterProperties jHipsterProperties, PlatformTransactionManager transactionManager,
+                          ApplicationProperties applicationProperties, MetricRegistry metricRegistry,
+                          @Qualifier("mailDispatcherTaskExecutor") TaskExecutor taskExecutor) {
+        this.mailMessageRepository = mailMessageRepository;
+        this.javaMailSender = javaMailSender;
+        this.jHipsterProperties = jHipsterProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getMail();
+        this.sent = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_MAIL_DISPATCHER, "sent"));
+        this.failed = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_MAIL_DISPATCHER, "failed"));
+        this.abandoned = metricRegistry.meter(MetricRegistry.name(PROP_METRIC_REG_MAIL_DISPATCHER, "abandoned"));
+        this.batches = metricRegistry.timer(MetricRegistry.name(PROP_METRIC_REG_MAIL_DISPATCHER, "batches"));
+        this.taskExecutor = taskExecutor;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.isEnabled()) {
+            log.debug("Starting the mail dispatcher, polling the outbox every {} ms", properties.getPollInterval());
+            running = true;
+            stopped = new CountDownLatch(1);
+            taskExecutor.execute(() -> {
+                try {
+                    poll();
+                } finally {
+                    stopped.countDown();
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (stopped != null) {
+            log.debug("Stopping the mail dispatcher");
+            synchronized (pollLock) {
+                running = false;
+                pollLock.notifyAll();
+            }
+            // The emails of a batch which is still being sent stay in the outbox, and are sent again when their lease expires
+            if (!stopped.await(properties.getPollInterval(), TimeUnit.MILLISECONDS)) {
+                log.warn("The mail dispatcher didn't stop within {} ms", properties.getPollInterval());
+            }
+            stopped = null;
+        }
+    }
+
+    private void poll() {
+        while (running) {
+            try {
+                dispatch();
+            } catch (RuntimeException e) {
+                log.error("Couldn't dispatch the queued emails", e);
+            }
+            synchronized (pollLock) {
+                if (running) {
+                    try {
+                        pollLock.wait(properties.getPollInterval());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the emails of the outbox which are due, batch after batch, until there are none left.
+     *
+     * @return the number of emails sent
+     */
+    public int dispatch() {
+        int total = 0;
+        int claimed;
+        do {
+            try (Timer.Context ignored = batches.time()) {
+                // Whole seconds, as the database may store the dates, so that the lease can be compared afterwards
+                Instant lease = Instant.now().plusMillis(properties.getLease()).truncatedTo(ChronoUnit.SECONDS);
+                List<MailMessage> mailMessages = transactionTemplate.execute(status -> claimBatch(lease));
+                claimed = mailMessages.size();
+                if (claimed > 0) {
+                    total += sendBatch(mailMessages, lease);
+                }
+            }
+        } while (claimed == properties.getBatchSize());
+        return total;
+    }
+
+    private List<MailMessage> claimBatch(Instant lease) {
+        List<MailMessage> mailMessages = mailMessageRepository.findAllByNextAttemptDateLessThanEqual(Instant.now(),
+            new PageRequest(0, properties.getBatchSize(), Sort.Direction.ASC, "nextAttemptDate", "id"));
+        mailMessages.forEach(mailMessage -> mailMessage.setNextAttemptDate(lease));
+        return mailMessages;
+    }
+
+    /**
+     * @return the number of emails sent
+     */
+    private int sendBatch(List<MailMessage> mailMessages, Instant lease) {
+        Map<Long, Exception> failures = new HashMap<>();
+        // The failed messages of a MailSendException are keyed by the MimeMessage instances that were sent
+        List<MimeMessage> mimeMessages = new ArrayList<>(mailMessages.size());
+        List<MailMessage> pendingMessages = new ArrayList<>(mailMessages.size());
+        for (MailMessage mailMessage : mailMessages) {
+            try {
+                mimeMessages.add(toMimeMessage(mailMessage));
+                pendingMessages.add(mailMessage);
+            } catch (MessagingException e) {
+                failures.put(mailMessage.getId(), e);
+            }
+        }
+        if (!mimeMessages.isEmpty()) {
+            try {
+                javaMailSender.send(mimeMessages.toArray(new MimeMessage[mimeMessages.size()]));
+            } catch (RuntimeException e) {
+                Map<Object, Exception> failedMessages =
+                    e instanceof MailSendException ? ((MailSendException) e).getFailedMessages() : null;
+                for (int i = 0; i < mimeMessages.size(); i++) {
+                    // Can't tell which emails were sent without the failed messages, retry all of them
+                    Exception exception = failedMessages == null || failedMessages.isEmpty() ?
+                        e : failedMessages.get(mimeMessages.get(i));
+                    if (exception != null) {
+                        failures.put(pendingMessages.get(i).getId(), exception);
+                    }
+                }
+            }
+        }
+        return transactionTemplate.execute(status -> completeBatch(mailMessages, failures, lease));
+    }
+
+    /**
+     * Remove the sent emails from the outbox, and reschedule the failed ones.
+     *
+     * @return the number of emails sent
+     */
+    private int completeBatch(List<MailMessage> mailMessages, Map<Long, Exception> failures, Instant lease) {
+        List<Long> ids = mailMessages.stream().map(MailMessage::getId).collect(Collectors.toList());
+        List<MailMessage> sentMessages = new ArrayList<>(mailMessages.size());
+        for (MailMessage mailMessage : mailMessageRepository.findAllByIdIn(ids)) {
+            if (!lease.equals(mailMessage.getNextAttemptDate())) {
+                log.warn("The lease of the email to '{}' expired while it was being sent, it may be sent twice",
+                    mailMessage.getTo());
+                continue;
+            }
+            Exception exception = failures.get(mailMessage.getId());
+            if (exception == null) {
+                sentMessages.add(mailMessage);
+            } else {
+                fail(mailMessage, exception);
+            }
+        }
+        if (!sentMessages.isEmpty()) {
+            mailMessageRepository.deleteInBatch(sentMessages);
+            sent.mark(sentMessages.size());
+            log.debug("Sent {} emails", sentMessages.size());
+        }
+        return sentMessages.size();
+    }
+
+    private MimeMessage toMimeMessage(MailMessage mailMessage) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper message = new MimeMessageHelper(mimeMessage, mailMessage.isMultipart(), CharEncoding.UTF_8);
+        message.setTo(mailMessage.getTo());
+        message.setFrom(jHipsterProperties.getMail().getFrom());
+        message.setSubject(mailMessage.getSubject());
+        message.setText(mailMessage.getContent(), mailMessage.isHtml());
+        return mimeMessage;
+    }
+
+    private void fail(MailMessage mailMessage, Exception e) {
+        int attempts = mailMessage.getAttempts() + 1;
+        if (attempts >= properties.getMaxAttempts()) {
+            log.error("Email to '{}' abandoned after {} attempts", mailMessage.getTo(), attempts, e);
+            mailMessageRepository.delete(mailMessage);
+            abandoned.mark();
+            return;
+        }
+        // initial-backoff, doubled with each failed send, without overflowing
+        long backoff = Math.min(properties.getMaxBackoff(),
+            properties.getInitialBackoff() << Math.min(attempts - 1, Long.numberOfLeadingZeros(properties.getInitialBackoff()) - 1));
+        if (log.isDebugEnabled()) {
+            log.warn("Email to '{}' could not be sent, retrying in {} ms", mailMessage.getTo(), backoff, e);
+        } else {
+            log.warn("Email to '{}' could not be sent, retrying in {} ms: {}", mailMessage.getTo(), backoff, e.getMessage());
+        }
+        mailMessage.setAttempts(attempts);
+        mailMessage.setNextAttemptDate(Instant.now().plusMillis(backoff));
+        mailMessage.setLastError(StringUtils.abbreviate(e.toString(), 255));
+        failed.mark();
+    }
+}
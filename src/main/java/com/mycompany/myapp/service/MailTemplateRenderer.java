@@ -0,0 +1,233 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.config.Constants;
+import com.mycompany.myapp.domain.User;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the subject and content of the emails sent to the users.
+ * <p>
+ * A template is processed by Thymeleaf only once per language, for a placeholder user whose properties are slot
+ * markers. The output is split around the markers into static fragments, so that rendering it for a user only joins
+ * these fragments with the properties of the user. The subjects are cached per language as well.
+ * <p>
+ * This requires the templates to print the String properties of the user as they are, and not to use its other
+ * properties. A template which transforms them, changing the case of a marker or URL-encoding it, leaves marker text
+ * in the fragments: it isn't cached, and is always rendered by Thymeleaf. A user whose printed properties are null or
+ * would need to be escaped is rendered by Thymeleaf as well. Nothing is cached when spring.thymeleaf.cache is
+ * disabled, so that the templates can be edited in development.
+ */
+@Component
+public class MailTemplateRenderer {
+
+    private static final String USER = "user";
+
+    private static final String BASE_URL = "baseUrl";
+
+    /**
+     * Mixed case, and followed by a '%' which is URL-encoded, so that a transformed marker doesn't match SLOT_PATTERN.
+     */
+    private static final String SLOT_PREFIX = "mailTemplateSlot";
+
+    private static final Pattern SLOT_PATTERN = Pattern.compile(SLOT_PREFIX + "(\\d+)%");
+
+    /**
+     * Stands for a template which can't be compiled, so that it isn't processed again for each email.
+     */
+    private static final CompiledTemplate NOT_COMPILED = new CompiledTemplate(new String[] {""}, new Slot[0]);
+
+    private static final List<Slot> SLOTS = Arrays.asList(
+        // Set as it is, since setLogin would lowercase the marker
+        new Slot(User::getLogin, (user, login) -> new DirectFieldAccessor(user).setPropertyValue("login", login)),
+        new Slot(User::getFirstName, User::setFirstName),
+        new Slot(User::getLastName, User::setLastName),
+        new Slot(User::getEmail, User::setEmail),
+        new Slot(User::getImageUrl, User::setImageUrl),
+        new Slot(User::getLangKey, User::setLangKey),
+        new Slot(User::getActivationKey, User::setActivationKey),
+        new Slot(User::getResetKey, User::setResetKey));
+
+    private final Logger log = LoggerFactory.getLogger(MailTemplateRenderer.class);
+
+    private final JHipsterProperties jHipsterProperties;
+
+    private final MessageSource messageSource;
+
+    private final SpringTemplateEngine templateEngine;
+
+    private final boolean cache;
+
+    private final ConcurrentMap<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> subjects = new ConcurrentHashMap<>();
+
+    public MailTemplateRenderer(JHipsterProperties jHipsterProperties, MessageSource messageSource,
+                                SpringTemplateEngine templateEngine, ThymeleafProperties thymeleafProperties) {
+        this.jHipsterProperties = jHipsterProperties;
+        this.messageSource = messageSource;
+        this.templateEngine = templateEngine;
+        this.cache = thymeleafProperties.isCache();
+    }
+
+    /**
+     * @param user the user the email is sent to
+     * @param templateName the name of the Thymeleaf template of the content
+     * @return the content of the email, in the language of the user
+     */
+    public String renderContent(User user, String templateName) {
+        String langKey = langKey(user);
+        if (!cache) {
+            return process(user, templateName, langKey);
+        }
+        CompiledTemplate template = templates.computeIfAbsent(templateName + ':' + langKey,
+            key -> compile(templateName, langKey));
+        if (template == NOT_COMPILED) {
+            return process(user, templateName, langKey);
+        }
+        String content = template.render(user);
+        return content != null ? content : process(user, templateName, langKey);
+    }
+
+    /**
+     * @param user the user the email is sent to
+     * @param titleKey the message key of the subject
+     * @return the subject of the email, in the language of the user
+     */
+    public String renderSubject(User user, String titleKey) {
+        String langKey = langKey(user);
+        if (!cache) {
+            return messageSource.getMessage(titleKey, null, Locale.forLanguageTag(langKey));
+        }
+        return subjects.computeIfAbsent(titleKey + ':' + langKey,
+            key -> messageSource.getMessage(titleKey, null, Locale.forLanguageTag(langKey)));
+    }
+
+    /**
+     * @return whether the template was compiled into fragments for the language, rather than rendered by Thymeleaf
+     */
+    boolean isCompiled(String templateName, String langKey) {
+        CompiledTemplate template = templates.get(templateName + ':' + langKey);
+        return template != null && template != NOT_COMPILED;
+    }
+
+    private static String langKey(User user) {
+        return user.getLangKey() != null ? user.getLangKey() : Constants.DEFAULT_LANGUAGE;
+    }
+
+    private String process(User user, String templateName, String langKey) {
+        Context context = new Context(Locale.forLanguageTag(langKey));
+        context.setVariable(USER, user);
+        context.setVariable(BASE_URL, jHipsterProperties.getMail().getBaseUrl());
+        return templateEngine.process(templateName, context);
+    }
+
+    private CompiledTemplate compile(String templateName, String langKey) {
+        log.debug("Compiling the '{}' email template for language '{}'", templateName, langKey);
+        User placeholder = new User();
+        for (int i = 0; i < SLOTS.size(); i++) {
+            SLOTS.get(i).setter.accept(placeholder, SLOT_PREFIX + i + '%');
+        }
+        String output = process(placeholder, templateName, langKey);
+        List<String> fragments = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        Matcher matcher = SLOT_PATTERN.matcher(output);
+        int start = 0;
+        while (matcher.find()) {
+            fragments.add(output.substring(start, matcher.start()));
+            slots.add(SLOTS.get(Integer.parseInt(matcher.group(1))));
+            start = matcher.end();
+        }
+        fragments.add(output.substring(start));
+        for (String fragment : fragments) {
+            if (fragment.toLowerCase(Locale.ROOT).contains(SLOT_PREFIX.toLowerCase(Locale.ROOT))) {
+                log.warn("The '{}' email template transforms the properties of the user, it is rendered by Thymeleaf " +
+                    "for each email", templateName);
+                return NOT_COMPILED;
+            }
+        }
+        return new CompiledTemplate(fragments.toArray(new String[fragments.size()]), slots.toArray(new Slot[slots.size()]));
+    }
+
+    private static class CompiledTemplate {
+
+        private final String[] fragments;
+
+        private final Slot[] slots;
+
+        private final int length;
+
+        CompiledTemplate(String[] fragments, Slot[] slots) {
+            this.fragments = fragments;
+            this.slots = slots;
+            this.length = Arrays.stream(fragments).mapToInt(String::length).sum();
+        }
+
+        /**
+         * @return the content for the user, or null if a property of the user can't be printed as it is
+         */
+        String render(User user) {
+            String[] values = new String[slots.length];
+            int valuesLength = 0;
+            for (int i = 0; i < slots.length; i++) {
+                String value = slots[i].getter.apply(user);
+                if (value == null || needsEscaping(value)) {
+                    return null;
+                }
+                values[i] = value;
+                valuesLength += value.length();
+            }
+            StringBuilder content = new StringBuilder(length + valuesLength);
+            for (int i = 0; i < slots.length; i++) {
+                content.append(fragments[i]).append(values[i]);
+            }
+            return content.append(fragments[slots.length]).toString();
+        }
+
+        private static boolean needsEscaping(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                switch (value.charAt(i)) {
+                    case '&':
+                    case '<':
+                    case '>':
+                    case '"':
+                    case '\'':
+                        return true;
+                    default:
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Slot {
+
+        private final Function<User, String> getter;
+
+        private final BiConsumer<User, String> setter;
+
+        Slot(Function<User, String> getter, BiConsumer<User, String> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+}
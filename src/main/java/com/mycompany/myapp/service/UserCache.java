@@ -0,0 +1,155 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.repository.UserRepository;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Cache of the users, with their authorities, looked up by login, email or id.
+ * <p>
+ * The users are cached by login. The email and id caches are secondary indexes, holding the login of the user, and
+ * an index entry is only trusted if the cached user still has this email or id. So a stale index entry is a miss,
+ * and evicting a user by login is enough to invalidate all its lookups.
+ * <p>
+ * A user is evicted when it is changed, and again once the transaction is completed. A lookup only caches the user
+ * it read if no user was evicted since the read started, so that a lookup running concurrently with a change can't
+ * leave the previous version in the cache.
+ * <p>
+ * The cached users are shared, they must not be modified. The changes go through the UserRepository.
+ */
+@Component
+public class UserCache {
+
+    public static final String USERS_CACHE = "users";
+
+    public static final String USERS_BY_EMAIL_CACHE = "usersByEmail";
+
+    public static final String USERS_BY_ID_CACHE = "usersById";
+
+    private final UserRepository userRepository;
+
+    private final Cache users;
+
+    private final Cache loginsByEmail;
+
+    private final Cache loginsById;
+
+    /**
+     * Number of evictions, guarded by this cache along with the conditional puts.
+     */
+    private long evictions;
+
+    public UserCache(UserRepository userRepository, CacheManager cacheManager) {
+        this.userRepository = userRepository;
+        this.users = cacheManager.getCache(USERS_CACHE);
+        this.loginsByEmail = cacheManager.getCache(USERS_BY_EMAIL_CACHE);
+        this.loginsById = cacheManager.getCache(USERS_BY_ID_CACHE);
+    }
+
+    /**
+     * @param login the login of the user, which must be lowercase
+     * @return the user with its authorities
+     */
+    public Optional<User> findOneByLogin(String login) {
+        if (login == null) {
+            return Optional.empty();
+        }
+        User user = users.get(login, User.class);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        long readEvictions = evictions();
+        return userRepository.findOneWithAuthoritiesByLogin(login).map(read -> put(read, readEvictions));
+    }
+
+    /**
+     * @param email the email of the user, compared ignoring case
+     * @return the user with its authorities
+     */
+    public Optional<User> findOneByEmailIgnoreCase(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        String lowercaseEmail = email.toLowerCase(Locale.ENGLISH);
+        String login = loginsByEmail.get(lowercaseEmail, String.class);
+        User user = login != null ? users.get(login, User.class) : null;
+        if (user != null && lowercaseEmail.equalsIgnoreCase(user.getEmail())) {
+            return Optional.of(user);
+        }
+        long readEvictions = evictions();
+        return userRepository.findOneWithAuthoritiesByEmailIgnoreCase(lowercaseEmail).map(read -> put(read, readEvictions));
+    }
+
+    /**
+     * @param id the id of the user
+     * @return the user with its authorities
+     */
+    public Optional<User> findOneById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        String login = loginsById.get(id, String.class);
+        User user = login != null ? users.get(login, User.class) : null;
+        if (user != null && id.equals(user.getId())) {
+            return Optional.of(user);
+        }
+        long readEvictions = evictions();
+        return Optional.ofNullable(userRepository.findOneWithAuthoritiesById(id)).map(read -> put(read, readEvictions));
+    }
+
+    /**
+     * Evict a user, before changing or deleting it.
+     * <p>
+     * Once the transaction is completed, the user is evicted again by its previous login and by its login at that
+     * time, in case it was renamed.
+     *
+     * @param user the user, with its current login
+     */
+    public void evict(User user) {
+        String login = user.getLogin();
+        evict(login);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(login);
+                    if (!login.equals(user.getLogin())) {
+                        evict(user.getLogin());
+                    }
+                }
+            });
+        }
+    }
+
+    private synchronized void evict(String login) {
+        evictions++;
+        users.evict(login);
+    }
+
+    private synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Cache a user read from the database, unless a user was evicted since the read started, as it may be stale.
+     */
+    private synchronized User put(User user, long readEvictions) {
+        if (evictions != readEvictions) {
+            return user;
+        }
+        users.put(user.getLogin(), user);
+        if (user.getEmail() != null) {
+            loginsByEmail.put(user.getEmail().toLowerCase(Locale.ENGLISH), user.getLogin());
+        }
+        loginsById.put(user.getId(), user.getLogin());
+        return user;
+    }
+}
@@ -13,9 +13,10 @@ import com.mycompany.myapp.web.rest.vm.ManagedUserVM;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -24,6 +25,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -35,21 +37,23 @@ public class UserService {
 
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
-    private static final String USERS_CACHE = "users";
-
     private final UserRepository userRepository;
 
     private final PasswordEncoder passwordEncoder;
 
     private final AuthorityRepository authorityRepository;
 
-    private final CacheManager cacheManager;
+    private final UserCache userCache;
+
+    private final MailService mailService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository, CacheManager cacheManager) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository,
+                       UserCache userCache, MailService mailService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
-        this.cacheManager = cacheManager;
+        this.userCache = userCache;
+        this.mailService = mailService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -59,7 +63,7 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
-                cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
+                userCache.evict(user);
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -74,7 +78,7 @@ public class UserService {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
-                cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
+                userCache.evict(user);
                 return user;
            });
     }
@@ -85,7 +89,8 @@ public class UserService {
             .map(user -> {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(Instant.now());
-                cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
+                userCache.evict(user);
+                mailService.sendPasswordResetMail(user);
                 return user;
             });
     }
@@ -111,11 +116,44 @@ public class UserService {
         authorities.add(authority);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
+        mailService.sendActivationEmail(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
 
     public User createUser(UserDTO userDTO) {
+        User user = newUser(userDTO, authorityRepository::findOne);
+        userRepository.save(user);
+        mailService.sendCreationEmail(user);
+        log.debug("Created Information for User: {}", user);
+        return user;
+    }
+
+    /**
+     * Create several users in a single transaction, so that their inserts are sent in JDBC batches.
+     * <p>
+     * The authorities of all the users are fetched with a single query.
+     *
+     * @param userDTOs the users to create
+     * @return the created users, in the same order
+     */
+    public List<User> createUsers(List<UserDTO> userDTOs) {
+        Set<String> authorityNames = userDTOs.stream()
+            .filter(userDTO -> userDTO.getAuthorities() != null)
+            .flatMap(userDTO -> userDTO.getAuthorities().stream())
+            .collect(Collectors.toSet());
+        Map<String, Authority> authorities = authorityRepository.findAll(authorityNames).stream()
+            .collect(Collectors.toMap(Authority::getName, authority -> authority));
+        List<User> users = userDTOs.stream()
+            .map(userDTO -> newUser(userDTO, authorities::get))
+            .collect(Collectors.toList());
+        userRepository.save(users);
+        users.forEach(mailService::sendCreationEmail);
+        log.debug("Created Information for {} Users", users.size());
+        return users;
+    }
+
+    private User newUser(UserDTO userDTO, Function<String, Authority> authorityResolver) {
         User user = new User();
         user.setLogin(userDTO.getLogin());
         user.setFirstName(userDTO.getFirstName());
@@ -129,7 +167,7 @@ public class UserService {
         }
         if (userDTO.getAuthorities() != null) {
             Set<Authority> authorities = userDTO.getAuthorities().stream()
-                .map(authorityRepository::findOne)
+                .map(authorityResolver)
                 .collect(Collectors.toSet());
             user.setAuthorities(authorities);
         }
@@ -138,8 +176,6 @@ public class UserService {
         user.setResetKey(RandomUtil.generateResetKey());
         user.setResetDate(Instant.now());
         user.setActivated(true);
-        userRepository.save(user);
-        log.debug("Created Information for User: {}", user);
         return user;
     }
 
@@ -159,7 +195,7 @@ public class UserService {
             user.setEmail(email);
             user.setLangKey(langKey);
             user.setImageUrl(imageUrl);
-            cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
+            userCache.evict(user);
             log.debug("Changed Information for User: {}", user);
         });
     }
@@ -174,6 +210,8 @@ public class UserService {
         return Optional.of(userRepository
             .findOne(userDTO.getId()))
             .map(user -> {
+                // Evicted by its previous login
+                userCache.evict(user);
                 user.setLogin(userDTO.getLogin());
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
@@ -186,7 +224,6 @@ public class UserService {
                 userDTO.getAuthorities().stream()
                     .map(authorityRepository::findOne)
                     .forEach(managedAuthorities::add);
-                cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -196,7 +233,7 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
-            cacheManager.getCache(USERS_CACHE).evict(login);
+            userCache.evict(user);
             log.debug("Deleted User: {}", user);
         });
     }
@@ -205,7 +242,7 @@ public class UserService {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(user -> {
             String encryptedPassword = passwordEncoder.encode(password);
             user.setPassword(encryptedPassword);
-            cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
+            userCache.evict(user);
             log.debug("Changed password for User: {}", user);
         });
     }
@@ -215,19 +252,49 @@ public class UserService {
         return userRepository.findAllByLoginNot(pageable, Constants.ANONYMOUS_USER).map(UserDTO::new);
     }
 
+    /**
+     * Get a batch of managed users in id order, starting after the given id.
+     * <p>
+     * This uses keyset pagination, so that no count query is issued and the cost of a batch
+     * doesn't depend on its position in the table.
+     *
+     * @param afterId the id of the last user of the previous batch, or 0 to start from the beginning
+     * @param size the maximum number of users to return
+     * @return the users with an id greater than afterId
+     */
+    @Transactional(readOnly = true)
+    public List<UserDTO> getManagedUsersAfter(long afterId, int size) {
+        return userRepository.findAllByIdGreaterThanAndLoginNot(
+                new PageRequest(0, size, Sort.Direction.ASC, "id"), afterId, Constants.ANONYMOUS_USER)
+            .stream()
+            .map(UserDTO::new)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The users returned by the getUserWithAuthorities methods come from the UserCache, they must not be modified.
+     *
+     * @param login the login of the user, which must be lowercase
+     * @return the user with its authorities
+     */
     @Transactional(readOnly = true)
     public Optional<User> getUserWithAuthoritiesByLogin(String login) {
-        return userRepository.findOneWithAuthoritiesByLogin(login);
+        return userCache.findOneByLogin(login);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<User> getUserWithAuthoritiesByEmail(String email) {
+        return userCache.findOneByEmailIgnoreCase(email);
     }
 
     @Transactional(readOnly = true)
     public User getUserWithAuthorities(Long id) {
-        return userRepository.findOneWithAuthoritiesById(id);
+        return userCache.findOneById(id).orElse(null);
     }
 
     @Transactional(readOnly = true)
     public User getUserWithAuthorities() {
-        return userRepository.findOneWithAuthoritiesByLogin(SecurityUtils.getCurrentUserLogin()).orElse(null);
+        return userCache.findOneByLogin(SecurityUtils.getCurrentUserLogin()).orElse(null);
     }
 
     /**
@@ -241,7 +308,7 @@ public class UserService {
         for (User user : users) {
             log.debug("Deleting not activated user {}", user.getLogin());
             userRepository.delete(user);
-            cacheManager.getCache(USERS_CACHE).evict(user.getLogin());
+            userCache.evict(user);
         }
     }
 
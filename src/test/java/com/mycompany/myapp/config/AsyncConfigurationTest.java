@@ -0,0 +1,129 @@
+package com.mycompany.myapp.config;
+
+import io.github.jhipster.config.JHipsterProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+/**
+ * Test class for the AsyncConfiguration class.
+ *
+ * @see AsyncConfiguration
+ */
+public class AsyncConfigurationTest {
+
+    private MetricRegistry metricRegistry;
+
+    private ApplicationProperties applicationProperties;
+
+    private AsyncConfiguration asyncConfiguration;
+
+    private AsyncTaskExecutor taskExecutor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setup() {
+        metricRegistry = new MetricRegistry();
+        applicationProperties = new ApplicationProperties();
+        asyncConfiguration = new AsyncConfiguration(new JHipsterProperties(), applicationProperties, metricRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        if (taskExecutor != null) {
+            ((DisposableBean) taskExecutor).destroy();
+        }
+    }
+
+    @Test
+    public void testAbortWhenBusy() throws Exception {
+        applicationProperties.getAsync().getMail().setMaxPoolSize(1);
+        applicationProperties.getAsync().getMail().setQueueCapacity(0);
+        taskExecutor = start(asyncConfiguration.mailTaskExecutor());
+        CountDownLatch started = new CountDownLatch(1);
+        taskExecutor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            taskExecutor.execute(() -> { });
+            failBecauseExceptionWasNotThrown(RejectedExecutionException.class);
+        } catch (RejectedExecutionException e) {
+            assertThat(metricRegistry.meter("async.mail.rejected").getCount()).isEqualTo(1);
+        }
+        assertThat(metricRegistry.getGauges().get("async.mail.active").getValue()).isEqualTo(1);
+        assertThat(metricRegistry.getGauges().get("async.mail.pool-size").getValue()).isEqualTo(1);
+        assertThat(metricRegistry.timer("async.mail.latency").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueueWhenBusy() throws Exception {
+        // The MailDispatcher doesn't take a thread of the mailTaskExecutor, which is left to the @Async methods
+        taskExecutor = start(asyncConfiguration.mailTaskExecutor());
+        CountDownLatch started = new CountDownLatch(1);
+        taskExecutor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<?> queued = taskExecutor.submit(() -> { });
+        assertThat(metricRegistry.getGauges().get("async.mail.queue-depth").getValue()).isEqualTo(1);
+
+        release.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+        assertThat(metricRegistry.meter("async.mail.rejected").getCount()).isZero();
+    }
+
+    @Test
+    public void testDiscardOldestWhenQueueIsFull() throws Exception {
+        applicationProperties.getAsync().getCache().setMaxPoolSize(1);
+        applicationProperties.getAsync().getCache().setQueueCapacity(1);
+        taskExecutor = start(asyncConfiguration.cacheTaskExecutor());
+        CountDownLatch started = new CountDownLatch(1);
+        taskExecutor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<?> oldest = taskExecutor.submit(() -> { });
+        Future<?> newest = taskExecutor.submit(() -> { });
+        assertThat(metricRegistry.getGauges().get("async.cache.queue-depth").getValue()).isEqualTo(1);
+        assertThat(metricRegistry.meter("async.cache.rejected").getCount()).isEqualTo(1);
+
+        release.countDown();
+        newest.get(5, TimeUnit.SECONDS);
+        assertThat(oldest.isDone()).isFalse();
+    }
+
+    private static AsyncTaskExecutor start(AsyncTaskExecutor taskExecutor) throws Exception {
+        ((InitializingBean) taskExecutor).afterPropertiesSet();
+        return taskExecutor;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
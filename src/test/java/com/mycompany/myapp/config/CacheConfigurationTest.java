@@ -0,0 +1,111 @@
+package com.mycompany.myapp.config;
+
+import com.mycompany.myapp.service.UserCache;
+
+import io.github.jhipster.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.jcache.JCacheGaugeSet;
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Map;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the CacheConfiguration class.
+ *
+ * @see CacheConfiguration
+ */
+public class CacheConfigurationTest {
+
+    private EhcacheCachingProvider cachingProvider;
+
+    private ApplicationProperties applicationProperties;
+
+    private CacheConfiguration cacheConfiguration;
+
+    private CacheManager cacheManager;
+
+    @Before
+    public void setup() {
+        cachingProvider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getUsers().setMaxEntries(1L);
+        applicationProperties.getCache().getUsers().setOffheapSize(1);
+        cacheConfiguration = new CacheConfiguration(new JHipsterProperties(), applicationProperties);
+    }
+
+    @After
+    public void tearDown() {
+        if (cacheManager != null) {
+            cacheManager.close();
+        }
+    }
+
+    @Test
+    public void testOffheapTier() {
+        // Its own cache manager, so that the caches of the default one, shared with the other tests, are left as they are
+        cacheManager = cacheConfiguration.createCacheManager(cachingProvider, URI.create("cache-configuration-test"));
+
+        assertThat(offheapSize(cacheManager.getCache(UserCache.USERS_CACHE))).isEqualTo(1L);
+        // The indexes have their own tiers
+        assertThat(offheapSize(cacheManager.getCache(UserCache.USERS_BY_EMAIL_CACHE))).isNull();
+        assertThat(offheapSize(cacheManager.getCache(UserCache.USERS_BY_ID_CACHE))).isNull();
+
+        // A single entry fits on the heap, the other one is read from the off-heap tier
+        Cache<Object, Object> users = cacheManager.getCache(UserCache.USERS_CACHE);
+        users.put("user", "user");
+        users.put("admin", "admin");
+        assertThat(users.get("user")).isEqualTo("user");
+        assertThat(users.get("admin")).isEqualTo("admin");
+    }
+
+    @Test
+    public void testStatisticsGauges() {
+        cacheManager = cacheConfiguration.createCacheManager(cachingProvider, URI.create("cache-configuration-test"));
+        cacheConfiguration.createCache(cacheManager, "cacheConfigurationTest", applicationProperties.getCache().getUsers());
+        Cache<Object, Object> cache = cacheManager.getCache("cacheConfigurationTest");
+        cache.put("user", "user");
+        cache.get("user");
+        cache.get("admin");
+
+        Map<String, Metric> gauges = new JCacheGaugeSet().getMetrics();
+        assertThat(((Gauge<?>) gauges.get("cacheConfigurationTest.cache-puts")).getValue()).isEqualTo(1L);
+        assertThat(((Gauge<?>) gauges.get("cacheConfigurationTest.cache-hits")).getValue()).isEqualTo(1L);
+        assertThat(((Gauge<?>) gauges.get("cacheConfigurationTest.cache-misses")).getValue()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testDefaultCacheManagerIsTheHibernateOne() {
+        // The JCacheRegionFactory of Hibernate takes the default cache manager of the default provider
+        assertThat(cachingProvider.getCacheManager(cachingProvider.getDefaultURI(),
+            new DefaultConfiguration(cachingProvider.getDefaultClassLoader())))
+            .isSameAs(Caching.getCachingProvider().getCacheManager());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Long offheapSize(Cache<Object, Object> cache) {
+        Eh107Configuration<Object, Object> configuration = cache.getConfiguration(Eh107Configuration.class);
+        ResourcePools resourcePools = configuration.unwrap(CacheRuntimeConfiguration.class).getResourcePools();
+        if (resourcePools.getPoolForResource(ResourceType.Core.OFFHEAP) == null) {
+            return null;
+        }
+        assertThat(resourcePools.getPoolForResource(ResourceType.Core.OFFHEAP).getUnit()).isEqualTo(MemoryUnit.MB);
+        return resourcePools.getPoolForResource(ResourceType.Core.OFFHEAP).getSize();
+    }
+}
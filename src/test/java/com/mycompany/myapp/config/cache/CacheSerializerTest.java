@@ -0,0 +1,124 @@
+package com.mycompany.myapp.config.cache;
+
+import com.mycompany.myapp.domain.Authority;
+import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.security.AuthoritiesConstants;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the CacheSerializer class.
+ *
+ * @see CacheSerializer
+ */
+public class CacheSerializerTest {
+
+    private final CacheSerializer serializer = new CacheSerializer(getClass().getClassLoader());
+
+    @Test
+    public void testUserRoundTrip() throws Exception {
+        User user = createUser(1L, "johndoe");
+
+        User read = (User) serializer.read(serializer.serialize(user));
+
+        assertThat(read).isEqualToComparingFieldByField(user);
+        assertThat(read.getAuthorities()).isInstanceOf(HashSet.class);
+        assertThat(serializer.equals(user, serializer.serialize(user))).isTrue();
+    }
+
+    @Test
+    public void testUserWithNullFieldsRoundTrip() throws Exception {
+        User user = new User();
+        user.setLogin("johndoe");
+        user.setCreatedDate(null);
+        user.setLastModifiedDate(null);
+
+        User read = (User) serializer.read(serializer.serialize(user));
+
+        assertThat(read).isEqualToComparingFieldByField(user);
+    }
+
+    @Test
+    public void testUserIsSmallerThanJavaSerialized() throws Exception {
+        User user = createUser(1L, "johndoe");
+
+        ByteBuffer binary = serializer.serialize(user);
+        ByteArrayOutputStream javaSerialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(javaSerialized)) {
+            out.writeObject(user);
+        }
+
+        assertThat(binary.remaining()).isLessThan(javaSerialized.size() / 2);
+    }
+
+    @Test
+    public void testKeysAndOtherValuesRoundTrip() throws Exception {
+        Authority authority = new Authority();
+        authority.setName(AuthoritiesConstants.ADMIN);
+        Map.Entry<String, Long> entry = new AbstractMap.SimpleImmutableEntry<>("johndoe", 1L);
+
+        assertThat(serializer.read(serializer.serialize("johndoe"))).isEqualTo("johndoe");
+        assertThat(serializer.read(serializer.serialize(1L))).isEqualTo(1L);
+        assertThat(serializer.read(serializer.serialize(authority))).isEqualTo(authority);
+        assertThat(serializer.read(serializer.serialize(entry))).isEqualTo(entry);
+        assertThat(serializer.equals("johndoe", serializer.serialize("janedoe"))).isFalse();
+    }
+
+    @Test
+    public void testUsersStoredOffHeap() {
+        try (CacheManager cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true)) {
+            Cache<Object, Object> cache = cacheManager.createCache("users",
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                    ResourcePoolsBuilder.newResourcePoolsBuilder().heap(1, EntryUnit.ENTRIES).offheap(1, MemoryUnit.MB))
+                    .withKeySerializer(serializer)
+                    .withValueSerializer(serializer));
+            for (long id = 0; id < 100; id++) {
+                cache.put("user-" + id, createUser(id, "user-" + id));
+            }
+
+            for (long id = 0; id < 100; id++) {
+                User user = (User) cache.get("user-" + id);
+                assertThat(user.getId()).isEqualTo(id);
+                assertThat(user.getAuthorities()).extracting("name").containsOnly(AuthoritiesConstants.USER);
+            }
+        }
+    }
+
+    private static User createUser(Long id, String login) {
+        Authority authority = new Authority();
+        authority.setName(AuthoritiesConstants.USER);
+        User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        user.setPassword("$2a$10$gSAhZrxMllrbgj/kkK9UceBPpChGWJA7SYIb1Mqo.n5aNLq1/oRrC");
+        user.setFirstName("john");
+        user.setLastName("doe");
+        user.setEmail(login + "@localhost");
+        user.setActivated(true);
+        user.setLangKey("en");
+        user.setImageUrl("http://placehold.it/50x50");
+        user.setResetKey("12345678901234567890");
+        user.setResetDate(Instant.ofEpochSecond(1500000000L, 123456789));
+        user.setCreatedBy("system");
+        user.setLastModifiedBy("admin");
+        user.getAuthorities().add(authority);
+        return user;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mycompany.myapp.config.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the HdrHistogramReservoir class.
+ *
+ * @see HdrHistogramReservoir
+ */
+public class HdrHistogramReservoirTest {
+
+    private long tick;
+
+    private final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(60, TimeUnit.SECONDS, new Clock() {
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    });
+
+    @Test
+    public void testSnapshot() {
+        for (long value = 1; value <= 100; value++) {
+            reservoir.update(value);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat(snapshot.size()).isEqualTo(100);
+        assertThat(snapshot.getMin()).isEqualTo(1);
+        assertThat(snapshot.getMax()).isEqualTo(100);
+        assertThat(snapshot.getMedian()).isEqualTo(50);
+        // The values of a snapshot are kept for the next ones
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(100);
+    }
+
+    @Test
+    public void testValuesSlideOutOfTheWindow() {
+        reservoir.update(200);
+        reservoir.getSnapshot();
+        tick += TimeUnit.SECONDS.toNanos(30);
+        reservoir.update(10);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.getMax()).isEqualTo(200);
+
+        tick += TimeUnit.SECONDS.toNanos(40);
+        snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.getMax()).isEqualTo(10);
+
+        tick += TimeUnit.MINUTES.toNanos(10);
+        assertThat(reservoir.getSnapshot().size()).isZero();
+    }
+
+    @Test
+    public void testNegativeTicks() {
+        // The origin of System.nanoTime() is arbitrary
+        tick = -TimeUnit.MINUTES.toNanos(5);
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(60, TimeUnit.SECONDS, new Clock() {
+            @Override
+            public long getTick() {
+                return tick;
+            }
+        });
+        reservoir.update(200);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(1);
+
+        tick += TimeUnit.SECONDS.toNanos(30);
+        reservoir.update(10);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(2);
+
+        tick += TimeUnit.SECONDS.toNanos(40);
+        snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.getMax()).isEqualTo(10);
+    }
+}
@@ -6,7 +6,6 @@ import com.mycompany.myapp.domain.User;
 import com.mycompany.myapp.repository.AuthorityRepository;
 import com.mycompany.myapp.repository.UserRepository;
 import com.mycompany.myapp.security.AuthoritiesConstants;
-import com.mycompany.myapp.service.MailService;
 import com.mycompany.myapp.service.UserService;
 import com.mycompany.myapp.web.rest.UserResourceIntTest;
 
@@ -17,6 +16,7 @@ import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.reactivex.schedulers.Schedulers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -45,8 +45,6 @@ import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
-import static org.mockito.Matchers.anyObject;
-import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -89,9 +87,6 @@ public class AccountServiceIntTest {
     @Mock
     private UserService mockUserService;
 
-    @Mock
-    private MailService mockMailService;
-
     private Server mockServer;
 
     private Server mockUserServer;
@@ -103,13 +98,12 @@ public class AccountServiceIntTest {
     @Before
     public void setUp() throws IOException {
         MockitoAnnotations.initMocks(this);
-        doNothing().when(mockMailService).sendActivationEmail(anyObject());
 
         AccountService service =
-            new AccountService(userRepository, userService, mockMailService, userProtoMapper);
+            new AccountService(userRepository, userService, userProtoMapper, Schedulers.trampoline());
 
         AccountService userService =
-            new AccountService(userRepository, mockUserService, mockMailService,userProtoMapper);
+            new AccountService(userRepository, mockUserService, userProtoMapper, Schedulers.trampoline());
 
         String uniqueServerName = "Mock server for " + AccountService.class;
         mockServer = InProcessServerBuilder
@@ -1,11 +1,15 @@
 package com.mycompany.myapp.grpc;
 
 import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.config.ApplicationProperties;
 import com.mycompany.myapp.config.audit.AuditEventConverter;
 import com.mycompany.myapp.domain.PersistentAuditEvent;
+import com.mycompany.myapp.repository.AuditEventBroadcaster;
 import com.mycompany.myapp.repository.PersistenceAuditEventRepository;
+import com.mycompany.myapp.security.AuthoritiesConstants;
 import com.mycompany.myapp.service.AuditEventService;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.protobuf.Int64Value;
 import io.grpc.Server;
 import io.grpc.Status;
@@ -13,17 +17,27 @@ import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.reactivex.schedulers.Schedulers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
@@ -43,6 +57,8 @@ public class AuditGrpcServiceIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    private AuditEventBroadcaster auditEventBroadcaster;
+
     private PersistentAuditEvent auditEvent;
 
     private Server mockServer;
@@ -52,19 +68,29 @@ public class AuditGrpcServiceIntTest {
     @Before
     public void setUp() throws IOException {
         AuditEventService auditEventService =
-            new AuditEventService(auditEventRepository, auditEventConverter);
-        AuditGrpcService service = new AuditGrpcService(auditEventService);
+            new AuditEventService(auditEventRepository, auditEventConverter, new ApplicationProperties());
+        auditEventBroadcaster = new AuditEventBroadcaster(new ApplicationProperties(), new MetricRegistry());
+        AuditGrpcService service = new AuditGrpcService(auditEventService, auditEventRepository, Optional.empty(),
+            auditEventBroadcaster, new ApplicationProperties(), Schedulers.trampoline());
         String uniqueServerName = "Mock server for " + AuditGrpcService.class;
         mockServer = InProcessServerBuilder
             .forName(uniqueServerName).directExecutor().addService(service).build().start();
         InProcessChannelBuilder channelBuilder =
             InProcessChannelBuilder.forName(uniqueServerName).directExecutor();
         stub = AuditServiceGrpc.newBlockingStub(channelBuilder.build());
+
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+            "admin",
+            "admin",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN))
+        );
+        SecurityContextHolder.getContext().setAuthentication(authentication);
     }
 
     @After
     public void tearDown() {
         mockServer.shutdownNow();
+        SecurityContextHolder.clearContext();
     }
 
     @Before
@@ -84,6 +110,56 @@ public class AuditGrpcServiceIntTest {
         assertThat(stub.getAuditEvents(AuditRequest.newBuilder().build())).extracting("principal").contains(SAMPLE_PRINCIPAL);
     }
 
+    @Test
+    public void getAllAuditsInIdOrder() throws Exception {
+        // Initialize the database
+        PersistentAuditEvent olderEvent = new PersistentAuditEvent();
+        olderEvent.setAuditEventType(SAMPLE_TYPE);
+        olderEvent.setPrincipal("other-principal");
+        olderEvent.setAuditEventDate(SAMPLE_TIMESTAMP.minusSeconds(3600));
+        auditEventRepository.save(auditEvent);
+        auditEventRepository.save(olderEvent);
+
+        assertThat(stub.getAuditEvents(AuditRequest.newBuilder().build())).extracting("principal")
+            .containsExactly(SAMPLE_PRINCIPAL, "other-principal");
+    }
+
+    @Test
+    public void getAllAuditsRejected() throws Exception {
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+            "user",
+            "user",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER))
+        );
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        try {
+            stub.getAuditEvents(AuditRequest.newBuilder().build()).forEachRemaining(event -> { });
+            failBecauseExceptionWasNotThrown(StatusException.class);
+        } catch (StatusRuntimeException e) {
+            assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.PERMISSION_DENIED);
+        }
+    }
+
+    @Test
+    public void getAllAuditsData() throws Exception {
+        // Initialize the database
+        auditEvent.getData().put("remoteAddress", "1.2.3.4");
+        auditEventRepository.save(auditEvent);
+
+        List<AuditEvent> events = new ArrayList<>();
+        stub.getAuditEvents(AuditRequest.newBuilder().build()).forEachRemaining(events::add);
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getDataMapMap()).containsEntry("remoteAddress", "1.2.3.4");
+        assertThat(events.get(0).getData()).isEqualTo("{\"remoteAddress\":\"1.2.3.4\"}");
+
+        events.clear();
+        stub.getAuditEvents(AuditRequest.newBuilder().setOmitJsonData(true).build()).forEachRemaining(events::add);
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getDataMapMap()).containsEntry("remoteAddress", "1.2.3.4");
+        assertThat(events.get(0).getData()).isEmpty();
+    }
+
     @Test
     public void getAudit() throws Exception {
         // Initialize the database
@@ -119,6 +195,65 @@ public class AuditGrpcServiceIntTest {
         assertThat(stub.getAuditEvents(request)).isEmpty();
     }
 
+    @Test
+    public void subscribeAuditEvents() throws Exception {
+        // Initialize the database
+        auditEventRepository.save(auditEvent);
+
+        AuditSubscription subscription = AuditSubscription.newBuilder()
+            .setFromTimestamp(ProtobufMappers.instantToTimestamp(SAMPLE_TIMESTAMP))
+            .setPrincipal(SAMPLE_PRINCIPAL)
+            .build();
+        Iterator<AuditEvent> events = stub.subscribeAuditEvents(subscription);
+
+        // The stored event is replayed first
+        AuditEvent event = events.next();
+        assertThat(event.getPrincipal()).isEqualTo(SAMPLE_PRINCIPAL);
+        assertThat(event.getTimestamp()).isEqualTo(ProtobufMappers.instantToTimestamp(SAMPLE_TIMESTAMP));
+
+        // Then the new events are pushed, when they match the subscription
+        Instant later = Instant.now().plusSeconds(1);
+        auditEventBroadcaster.publish(createAuditEvent("other-principal", later));
+        PersistentAuditEvent newEvent = createAuditEvent(SAMPLE_PRINCIPAL, later);
+        newEvent.getData().put("remoteAddress", "1.2.3.4");
+        auditEventBroadcaster.publish(newEvent);
+        event = events.next();
+        assertThat(event.getPrincipal()).isEqualTo(SAMPLE_PRINCIPAL);
+        assertThat(event.getDataMapMap()).containsEntry("remoteAddress", "1.2.3.4");
+        assertThat(event.getData()).isEqualTo("{\"remoteAddress\":\"1.2.3.4\"}");
+    }
+
+    @Test
+    public void subscribeAuditEventsGetsRecentEventsOnce() throws Exception {
+        Instant now = Instant.now();
+        // Recorded before the subscription, and maybe not stored yet
+        PersistentAuditEvent recentEvent = createAuditEvent(SAMPLE_PRINCIPAL, now.minusSeconds(2));
+        auditEventRepository.save(recentEvent);
+        auditEventBroadcaster.publish(recentEvent);
+
+        AuditSubscription subscription = AuditSubscription.newBuilder()
+            .setFromTimestamp(ProtobufMappers.instantToTimestamp(now.minusSeconds(5)))
+            .build();
+        Iterator<AuditEvent> events = stub.subscribeAuditEvents(subscription);
+        // Recorded before the subscription, but published after it
+        auditEventBroadcaster.publish(createAuditEvent("late-principal", now.minusSeconds(1)));
+        auditEventBroadcaster.publish(createAuditEvent("new-principal", now.plusSeconds(1)));
+
+        List<String> principals = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            principals.add(events.next().getPrincipal());
+        }
+        assertThat(principals).containsExactly(SAMPLE_PRINCIPAL, "late-principal", "new-principal");
+    }
+
+    private static PersistentAuditEvent createAuditEvent(String principal, Instant auditEventDate) {
+        PersistentAuditEvent auditEvent = new PersistentAuditEvent();
+        auditEvent.setPrincipal(principal);
+        auditEvent.setAuditEventType(SAMPLE_TYPE);
+        auditEvent.setAuditEventDate(auditEventDate);
+        return auditEvent;
+    }
+
     @Test
     public void getNonExistingAudit() throws Exception {
         // Get the audit
@@ -19,6 +19,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
@@ -41,10 +42,9 @@ public class AuthenticationInterceptorTest {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        doReturn(true).when(tokenProvider).validateToken(anyString());
-        doReturn(new UsernamePasswordAuthenticationToken("user", "user",
-            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)))
-        ).when(tokenProvider).getAuthentication(anyString());
+        doReturn(Optional.of(new UsernamePasswordAuthenticationToken("user", "user",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER))))
+        ).when(tokenProvider).parseAuthentication(anyString());
 
         String uniqueServerName = "fake server for " + getClass();
         fakeServer = InProcessServerBuilder.forName(uniqueServerName)
@@ -69,8 +69,7 @@ public class AuthenticationInterceptorTest {
         metadata.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer dXNlcjp1c2Vy");
         LoggersServiceGrpc.LoggersServiceBlockingStub stub = MetadataUtils.attachHeaders(LoggersServiceGrpc.newBlockingStub(inProcessChannel), metadata);
         assertGetLoggersReturnsCode(stub, Status.Code.UNIMPLEMENTED);
-        verify(tokenProvider).getAuthentication("dXNlcjp1c2Vy");
-        verify(tokenProvider).validateToken("dXNlcjp1c2Vy");
+        verify(tokenProvider).parseAuthentication("dXNlcjp1c2Vy");
     }
 
     @Test
@@ -79,8 +78,7 @@ public class AuthenticationInterceptorTest {
         metadata.put(Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer dXNlcjp1c2Vy");
         LoggersServiceGrpc.LoggersServiceBlockingStub stub = MetadataUtils.attachHeaders(LoggersServiceGrpc.newBlockingStub(inProcessChannel), metadata);
         assertGetLoggersReturnsCode(stub, Status.Code.UNIMPLEMENTED);
-        verify(tokenProvider).getAuthentication("dXNlcjp1c2Vy");
-        verify(tokenProvider).validateToken("dXNlcjp1c2Vy");
+        verify(tokenProvider).parseAuthentication("dXNlcjp1c2Vy");
     }
 
     @Test
@@ -91,9 +89,9 @@ public class AuthenticationInterceptorTest {
 
     @Test
     public void testAnonymousUserDenied() {
-        doReturn(new UsernamePasswordAuthenticationToken("user", "user",
-            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS)))
-        ).when(tokenProvider).getAuthentication(anyString());
+        doReturn(Optional.of(new UsernamePasswordAuthenticationToken("user", "user",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS))))
+        ).when(tokenProvider).parseAuthentication(anyString());
         Metadata metadata = new Metadata();
         metadata.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer dXNlcjp1c2Vy");
         LoggersServiceGrpc.LoggersServiceBlockingStub stub = MetadataUtils.attachHeaders(LoggersServiceGrpc.newBlockingStub(inProcessChannel), metadata);
@@ -110,7 +108,7 @@ public class AuthenticationInterceptorTest {
 
     @Test
     public void testInvalidToken() {
-        doReturn(false).when(tokenProvider).validateToken(anyString());
+        doReturn(Optional.empty()).when(tokenProvider).parseAuthentication(anyString());
 
         Metadata metadata = new Metadata();
         metadata.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer user_token");
@@ -0,0 +1,171 @@
+package com.mycompany.myapp.grpc;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.health.OrderedHealthAggregator;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the HealthRefresher class.
+ *
+ * @see HealthRefresher
+ */
+public class HealthRefresherTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private Map<String, org.springframework.boot.actuate.health.HealthIndicator> healthIndicators;
+
+    private AtomicInteger checks;
+
+    @Before
+    public void setUp() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getHealth().setTimeout(100);
+        checks = new AtomicInteger();
+        healthIndicators = new HashMap<>();
+        healthIndicators.put("dbHealthIndicator", () -> {
+            checks.incrementAndGet();
+            return org.springframework.boot.actuate.health.Health.up().withDetail("database", "H2").build();
+        });
+    }
+
+    @Test
+    public void testRefresh() {
+        HealthRefresher healthRefresher = new HealthRefresher(new OrderedHealthAggregator(), healthIndicators,
+            applicationProperties, new SimpleAsyncTaskExecutor("health-test-"));
+
+        Health health = healthRefresher.refresh().blockingGet();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getHealthIndicatorsMap().get("dbHealthIndicator").getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getHealthIndicatorsMap().get("dbHealthIndicator").getDetailsMap()).containsEntry("database", "H2");
+        // Each indicator is checked once per refresh
+        assertThat(checks.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRefreshTimeout() {
+        healthIndicators.put("diskSpaceHealthIndicator", () -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return org.springframework.boot.actuate.health.Health.up().build();
+        });
+        HealthRefresher healthRefresher = new HealthRefresher(new OrderedHealthAggregator(), healthIndicators,
+            applicationProperties, new SimpleAsyncTaskExecutor("health-test-"));
+
+        Health health = healthRefresher.refresh().blockingGet();
+        assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.getHealthIndicatorsMap().get("dbHealthIndicator").getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getHealthIndicatorsMap().get("diskSpaceHealthIndicator").getStatus()).isEqualTo(Status.DOWN);
+    }
+
+    @Test
+    public void testRefreshHungIndicator() throws Exception {
+        CountDownLatch hung = new CountDownLatch(1);
+        AtomicInteger mailChecks = new AtomicInteger();
+        healthIndicators.put("mailHealthIndicator", () -> {
+            mailChecks.incrementAndGet();
+            try {
+                hung.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return org.springframework.boot.actuate.health.Health.up().build();
+        });
+        healthIndicators.put("diskSpaceHealthIndicator", () -> org.springframework.boot.actuate.health.Health.up().build());
+        // As many threads as indicators, without a queue, like the healthTaskExecutor
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(1);
+        taskExecutor.setMaxPoolSize(healthIndicators.size());
+        taskExecutor.setQueueCapacity(0);
+        taskExecutor.initialize();
+        HealthRefresher healthRefresher = new HealthRefresher(new OrderedHealthAggregator(), healthIndicators,
+            applicationProperties, taskExecutor);
+        try {
+            for (int i = 0; i < 5; i++) {
+                Health health = healthRefresher.refresh().blockingGet();
+                assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+                assertThat(health.getHealthIndicatorsMap().get("dbHealthIndicator").getStatus()).isEqualTo(Status.UP);
+                assertThat(health.getHealthIndicatorsMap().get("diskSpaceHealthIndicator").getStatus()).isEqualTo(Status.UP);
+                assertThat(health.getHealthIndicatorsMap().get("mailHealthIndicator").getStatus()).isEqualTo(Status.DOWN);
+            }
+            // The hung check holds a single thread, it isn't submitted again while it runs
+            assertThat(mailChecks.get()).isEqualTo(1);
+            assertThat(checks.get()).isEqualTo(5);
+        } finally {
+            hung.countDown();
+            taskExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetHealthFromLastRefresh() {
+        HealthRefresher healthRefresher = new HealthRefresher(new OrderedHealthAggregator(), healthIndicators,
+            applicationProperties, new SimpleAsyncTaskExecutor("health-test-"));
+        healthRefresher.start();
+        try {
+            assertThat(healthRefresher.getHealth().getStatus()).isEqualTo(Status.UP);
+            assertThat(healthRefresher.getHealth().getStatus()).isEqualTo(Status.UP);
+            // Served from the snapshot, without checking the indicators again
+            assertThat(checks.get()).isEqualTo(1);
+        } finally {
+            healthRefresher.stop();
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        AtomicReference<org.springframework.boot.actuate.health.Status> diskSpaceStatus =
+            new AtomicReference<>(org.springframework.boot.actuate.health.Status.UP);
+        healthIndicators.put("diskSpaceHealthIndicator", () -> org.springframework.boot.actuate.health.Health
+            .status(diskSpaceStatus.get())
+            // The details change on every check, only the status changes must be pushed
+            .withDetail("checks", checks.get())
+            .build());
+        applicationProperties.getHealth().setRefreshInterval(10);
+        HealthRefresher healthRefresher = new HealthRefresher(new OrderedHealthAggregator(), healthIndicators,
+            applicationProperties, new SimpleAsyncTaskExecutor("health-test-"));
+        healthRefresher.start();
+        try {
+            TestSubscriber<Health> watcher = healthRefresher.watch().test();
+            watcher.awaitCount(1);
+            assertThat(watcher.values().get(0).getStatus()).isEqualTo(Status.UP);
+
+            // Wait for a few refreshes
+            int checksBefore = checks.get();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (checks.get() < checksBefore + 3) {
+                assertThat(System.currentTimeMillis()).as("Time of the refreshes").isLessThan(deadline);
+                Thread.sleep(5);
+            }
+            watcher.assertValueCount(1);
+            // A new watcher starts from the last refresh, not from the last change
+            Health lastHealth = healthRefresher.watch().blockingFirst();
+            assertThat(Integer.parseInt(lastHealth.getHealthIndicatorsMap().get("diskSpaceHealthIndicator")
+                .getDetailsMap().get("checks"))).isGreaterThanOrEqualTo(checksBefore);
+
+            diskSpaceStatus.set(org.springframework.boot.actuate.health.Status.DOWN);
+            watcher.awaitCount(2);
+            assertThat(watcher.values().get(1).getStatus()).isEqualTo(Status.DOWN);
+            assertThat(watcher.values().get(1).getHealthIndicatorsMap().get("diskSpaceHealthIndicator").getStatus())
+                .isEqualTo(Status.DOWN);
+        } finally {
+            healthRefresher.stop();
+        }
+    }
+}
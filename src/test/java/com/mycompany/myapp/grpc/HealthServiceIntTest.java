@@ -1,6 +1,7 @@
 package com.mycompany.myapp.grpc;
 
 import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.config.ApplicationProperties;
 
 import com.google.protobuf.Empty;
 import io.grpc.Server;
@@ -13,9 +14,11 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.health.HealthAggregator;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -30,13 +33,18 @@ public class HealthServiceIntTest {
     @Autowired
     Map<String, org.springframework.boot.actuate.health.HealthIndicator> healthIndicators;
 
+    private HealthRefresher healthRefresher;
+
     private Server mockServer;
 
     private HealthServiceGrpc.HealthServiceBlockingStub stub;
 
     @Before
     public void setUp() throws IOException {
-        HealthService service = new HealthService(healthAggregator, healthIndicators);
+        healthRefresher = new HealthRefresher(healthAggregator, healthIndicators, new ApplicationProperties(),
+            new SyncTaskExecutor());
+        healthRefresher.start();
+        HealthService service = new HealthService(healthRefresher);
         String uniqueServerName = "Mock server for " + HealthService.class;
         mockServer = InProcessServerBuilder
             .forName(uniqueServerName).directExecutor().addService(service).build().start();
@@ -48,11 +56,19 @@ public class HealthServiceIntTest {
     @After
     public void tearDown() {
         mockServer.shutdownNow();
+        healthRefresher.stop();
     }
 
     @Test
     public void testHealth() {
         Health health = stub.getHealth(Empty.newBuilder().build());
         assertThat(health.getStatus()).isNotEqualTo(Status.UNKNOWN);
+        assertThat(health.getHealthIndicatorsMap()).containsOnlyKeys(healthIndicators.keySet().toArray(new String[0]));
+    }
+
+    @Test
+    public void testWatchHealth() {
+        Iterator<Health> healths = stub.watchHealth(Empty.newBuilder().build());
+        assertThat(healths.next()).isEqualTo(stub.getHealth(Empty.newBuilder().build()));
     }
 }
@@ -8,6 +8,7 @@ import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.reactivex.schedulers.Schedulers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,7 +39,7 @@ public class JWTServiceIntTest {
 
     @Before
     public void setUp() throws IOException {
-        JWTService service = new JWTService(tokenProvider, authenticationManager);
+        JWTService service = new JWTService(tokenProvider, authenticationManager, Schedulers.trampoline());
         String uniqueServerName = "Mock server for " + JWTService.class;
         mockServer = InProcessServerBuilder
             .forName(uniqueServerName).directExecutor().addService(service).build().start();
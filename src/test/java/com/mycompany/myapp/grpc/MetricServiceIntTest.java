@@ -2,10 +2,13 @@ package com.mycompany.myapp.grpc;
 
 import com.mycompany.myapp.AgathaApp;
 
-import com.google.protobuf.Empty;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import io.grpc.Server;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.reactivex.schedulers.Schedulers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,7 +19,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = AgathaApp.class)
@@ -25,13 +34,16 @@ public class MetricServiceIntTest {
     @Autowired
     private Collection<PublicMetrics> publicMetrics;
 
+    @Autowired
+    private MetricRegistry metricRegistry;
+
     private Server mockServer;
 
     private MetricServiceGrpc.MetricServiceBlockingStub stub;
 
     @Before
     public void setUp() throws IOException {
-        MetricService service = new MetricService(publicMetrics);
+        MetricService service = new MetricService(publicMetrics, metricRegistry, Schedulers.single());
         String uniqueServerName = "Mock server for " + MetricService.class;
         mockServer = InProcessServerBuilder
             .forName(uniqueServerName).directExecutor().addService(service).build().start();
@@ -43,11 +55,76 @@ public class MetricServiceIntTest {
     @After
     public void tearDown() {
         mockServer.shutdownNow();
+        metricRegistry.remove("test.stream");
+        metricRegistry.remove("test.timer");
+        metricRegistry.remove("test.counter");
+        metricRegistry.remove("test.meter");
     }
 
     @Test
     public void testGetMetrics() {
-        stub.getMetrics(Empty.newBuilder().build());
+        stub.getMetrics(MetricsRequest.newBuilder().build());
+    }
+
+    @Test
+    public void testGetMetricsByPrefix() {
+        Timer timer = metricRegistry.timer("test.timer");
+        timer.update(10, TimeUnit.MILLISECONDS);
+        timer.update(30, TimeUnit.MILLISECONDS);
+        metricRegistry.counter("test.counter").inc();
+
+        List<Metric> metrics = new ArrayList<>();
+        stub.getMetrics(MetricsRequest.newBuilder().setPrefix("test.").build()).forEachRemaining(metrics::add);
+
+        // The timer is sent as a histogram, instead of one metric per value
+        assertThat(metrics).extracting("name").containsExactly("test.counter", "test.timer");
+        assertThat(metrics.get(0).getLongValue()).isEqualTo(1);
+        Histogram histogram = metrics.get(1).getHistogram();
+        assertThat(histogram.getCount()).isEqualTo(2);
+        assertThat(histogram.getMin()).isEqualTo(10.0);
+        assertThat(histogram.getMax()).isEqualTo(30.0);
+        assertThat(histogram.getP999()).isEqualTo(30.0);
+    }
+
+    @Test
+    public void testStreamMetrics() {
+        Counter counter = metricRegistry.counter("test.stream");
+        counter.inc();
+
+        Iterator<MetricBatch> batches = stub.streamMetrics(MetricsSubscription.newBuilder()
+            .setIntervalMillis(1000)
+            .setPrefix("test.")
+            .build());
+
+        // The first batch has all the metrics, with their names
+        MetricBatch batch = batches.next();
+        Metric metric = batch.getMetricsList().stream()
+            .filter(m -> m.getName().equals("test.stream"))
+            .findFirst().orElseThrow(AssertionError::new);
+        assertThat(metric.getId()).isPositive();
+        assertThat(metric.getLongValue()).isEqualTo(1);
+
+        // The next ones only have those which changed, with their ids
+        counter.inc();
+        batch = batches.next();
+        assertThat(batch.getMetricsList()).containsExactly(Metric.newBuilder().setId(metric.getId()).setLongValue(2).build());
+    }
+
+    @Test
+    public void testStreamMetricsNamedLikeGetMetrics() {
+        metricRegistry.meter("test.meter").mark();
+
+        List<Metric> metrics = new ArrayList<>();
+        stub.getMetrics(MetricsRequest.newBuilder().setPrefix("test.meter").build()).forEachRemaining(metrics::add);
+        MetricBatch batch = stub.streamMetrics(MetricsSubscription.newBuilder()
+            .setIntervalMillis(1000)
+            .setPrefix("test.meter")
+            .build()).next();
+
+        assertThat(metrics).extracting("name").containsExactlyInAnyOrder("test.meter.count", "test.meter.meanRate",
+            "test.meter.oneMinuteRate", "test.meter.fiveMinuteRate", "test.meter.fifteenMinuteRate");
+        assertThat(batch.getMetricsList()).extracting("name")
+            .containsExactlyInAnyOrder(metrics.stream().map(Metric::getName).toArray());
     }
 
 }
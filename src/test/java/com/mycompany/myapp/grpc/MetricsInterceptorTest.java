@@ -0,0 +1,108 @@
+package com.mycompany.myapp.grpc;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.protobuf.Empty;
+import io.github.jhipster.config.JHipsterProperties;
+import io.grpc.*;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the MetricsInterceptor gRPC interceptor class.
+ *
+ * @see MetricsInterceptor
+ */
+public class MetricsInterceptorTest {
+
+    private static final String PROFILE_INFO_METRICS = "grpc.server.com.mycompany.myapp.ProfileInfoService.GetActiveProfiles";
+
+    private static final String LOGGERS_METRICS = "grpc.server.com.mycompany.myapp.LoggersService.GetLoggers";
+
+    private MetricRegistry metricRegistry;
+
+    private Server fakeServer;
+
+    private ManagedChannel inProcessChannel;
+
+    @Before
+    public void setUp() throws Exception {
+        metricRegistry = new MetricRegistry();
+        MetricsInterceptor interceptor = new MetricsInterceptor(metricRegistry);
+
+        String uniqueServerName = "fake server for " + getClass();
+        fakeServer = InProcessServerBuilder.forName(uniqueServerName)
+            .addService(ServerInterceptors.intercept(new ProfileInfoService(new JHipsterProperties(), new MockEnvironment()), interceptor))
+            .addService(ServerInterceptors.intercept(new LoggersServiceGrpc.LoggersServiceImplBase() {}, interceptor))
+            .directExecutor()
+            .build()
+            .start();
+        inProcessChannel = InProcessChannelBuilder.forName(uniqueServerName)
+            .directExecutor()
+            .build();
+    }
+
+    @After
+    public void tearDown() {
+        inProcessChannel.shutdownNow();
+        fakeServer.shutdownNow();
+    }
+
+    @Test
+    public void testSuccessfulCall() {
+        ProfileInfo profileInfo = ProfileInfoServiceGrpc.newBlockingStub(inProcessChannel)
+            .getActiveProfiles(Empty.getDefaultInstance());
+
+        assertThat(metricRegistry.getTimers().get(PROFILE_INFO_METRICS + ".latency").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get(PROFILE_INFO_METRICS + ".status.OK").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get(PROFILE_INFO_METRICS + ".requests").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get(PROFILE_INFO_METRICS + ".responses").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getHistograms().get(PROFILE_INFO_METRICS + ".response-size").getSnapshot().getMax())
+            .isEqualTo(profileInfo.getSerializedSize());
+        assertThat(metricRegistry.getCounters().get(PROFILE_INFO_METRICS + ".in-flight").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFailedCall() {
+        try {
+            LoggersServiceGrpc.newBlockingStub(inProcessChannel).getLoggers(Empty.getDefaultInstance()).forEachRemaining(l -> {});
+            failBecauseExceptionWasNotThrown(StatusRuntimeException.class);
+        } catch (StatusRuntimeException e) {
+            assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.UNIMPLEMENTED);
+        }
+
+        assertThat(metricRegistry.getTimers().get(LOGGERS_METRICS + ".latency").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get(LOGGERS_METRICS + ".status.UNIMPLEMENTED").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get(LOGGERS_METRICS + ".responses").getCount()).isEqualTo(0);
+        assertThat(metricRegistry.getCounters().get(LOGGERS_METRICS + ".in-flight").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCallFailingToStart() {
+        ServerCall<Empty, Empty> serverCall = mock(ServerCall.class);
+        when(serverCall.getMethodDescriptor()).thenReturn(MethodDescriptor.create(MethodDescriptor.MethodType.UNARY,
+            MethodDescriptor.generateFullMethodName("com.mycompany.myapp.LoggersService", "GetLoggers"),
+            ProtoUtils.marshaller(Empty.getDefaultInstance()), ProtoUtils.marshaller(Empty.getDefaultInstance())));
+        try {
+            new MetricsInterceptor(metricRegistry).interceptCall(serverCall, new Metadata(), (call, headers) -> {
+                throw new IllegalStateException("Not started");
+            });
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("Not started");
+        }
+
+        assertThat(metricRegistry.getCounters().get(LOGGERS_METRICS + ".in-flight").getCount()).isEqualTo(0);
+    }
+}
@@ -4,17 +4,20 @@ import com.mycompany.myapp.AgathaApp;
 import com.mycompany.myapp.domain.User;
 import com.mycompany.myapp.repository.UserRepository;
 import com.mycompany.myapp.security.AuthoritiesConstants;
-import com.mycompany.myapp.service.MailService;
 import com.mycompany.myapp.service.UserService;
 
 import com.google.protobuf.Empty;
 import com.google.protobuf.StringValue;
 
+import io.grpc.ManagedChannel;
 import io.grpc.Server;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -70,30 +73,34 @@ public class UserGrpcServiceIntTest {
     @Autowired
     private UserRepository userRepository;
 
-    @Autowired
-    private MailService mailService;
-
     @Autowired
     private UserService userService;
 
     @Autowired
     private UserProtoMapper userProtoMapper;
 
+    @Autowired
+    private Scheduler grpcScheduler;
+
     private Server mockServer;
 
+    private ManagedChannel channel;
+
     private UserServiceGrpc.UserServiceBlockingStub stub;
 
     private User user;
 
     @Before
     public void setUp() throws IOException {
-        UserGrpcService userGrpcService = new UserGrpcService(userRepository, mailService, userService, userProtoMapper);
+        UserGrpcService userGrpcService = new UserGrpcService(userRepository, userService, userProtoMapper,
+            Schedulers.trampoline());
         String uniqueServerName = "Mock server for " + UserGrpcService.class;
         mockServer = InProcessServerBuilder
             .forName(uniqueServerName).directExecutor().addService(userGrpcService).build().start();
         InProcessChannelBuilder channelBuilder =
             InProcessChannelBuilder.forName(uniqueServerName).directExecutor();
-        stub = UserServiceGrpc.newBlockingStub(channelBuilder.build());
+        channel = channelBuilder.build();
+        stub = UserServiceGrpc.newBlockingStub(channel);
     }
 
     @After
@@ -222,6 +229,61 @@ public class UserGrpcServiceIntTest {
         assertThat(userList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    public void createUsers() throws Exception {
+        // Initialize the database
+        userRepository.saveAndFlush(user);
+        int databaseSizeBeforeCreate = userRepository.findAll().size();
+
+        List<CreateUserResult> results = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        StreamObserver<UserProto> requestObserver = UserServiceGrpc.newStub(channel)
+            .createUsers(new StreamObserver<CreateUserResult>() {
+                @Override
+                public void onNext(CreateUserResult result) {
+                    results.add(result);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    errors.add(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            });
+        requestObserver.onNext(UserProto.newBuilder()
+            .setLogin(UPDATED_LOGIN)
+            .setEmail(UPDATED_EMAIL)
+            .setFirstName(UPDATED_FIRSTNAME)
+            .setLangKey(UPDATED_LANGKEY)
+            .addAuthorities(AuthoritiesConstants.USER)
+            .build());
+        requestObserver.onNext(UserProto.newBuilder().setLogin(DEFAULT_LOGIN).setEmail("anothermail@localhost").build());
+        requestObserver.onNext(UserProto.newBuilder().setLogin("anotherlogin").setEmail(UPDATED_EMAIL).build());
+        requestObserver.onNext(UserProto.newBuilder().setLogin("anotherlogin").setEmail("anothermail@localhost").build());
+        requestObserver.onCompleted();
+
+        assertThat(errors).isEmpty();
+        assertThat(results).extracting(CreateUserResult::getLogin)
+            .containsExactly(UPDATED_LOGIN, DEFAULT_LOGIN, "anotherlogin", "anotherlogin");
+        assertThat(results.get(0).getUser().getFirstName()).isEqualTo(UPDATED_FIRSTNAME);
+        assertThat(results.get(0).getUser().getAuthoritiesList()).containsExactly(AuthoritiesConstants.USER);
+        assertThat(results.get(1).getError()).isEqualTo("Login already in use");
+        assertThat(results.get(2).getError()).isEqualTo("Email already in use");
+        assertThat(results.get(3).getUser().getEmail()).isEqualTo("anothermail@localhost");
+
+        // Validate the Users in the database
+        List<User> userList = userRepository.findAll();
+        assertThat(userList).hasSize(databaseSizeBeforeCreate + 2);
+        User testUser = userRepository.findOneByLogin(UPDATED_LOGIN).orElse(null);
+        assertThat(testUser).isNotNull();
+        assertThat(testUser.getEmail()).isEqualTo(UPDATED_EMAIL);
+        assertThat(testUser.getLangKey()).isEqualTo(UPDATED_LANGKEY);
+    }
+
     @Test
     @Transactional
     public void createUserWithExistingEmail() throws Exception {
@@ -282,6 +344,31 @@ public class UserGrpcServiceIntTest {
         assertThat(foundUser.getLangKey()).isEqualTo(DEFAULT_LANGKEY);
     }
 
+    @Test
+    @Transactional
+    public void streamAllUsers() throws Exception {
+        // Initialize the database
+        User savedUser = userRepository.saveAndFlush(user);
+
+        // Resume the stream just before the saved user, one user per batch
+        UserCursor cursor = UserCursor.newBuilder()
+            .setAfterId(savedUser.getId() - 1)
+            .setBatchSize(1)
+            .build();
+        List<UserProto> users = new ArrayList<>();
+        stub.streamAllUsers(cursor).forEachRemaining(users::add);
+
+        assertThat(users).isNotEmpty();
+        assertThat(users.get(0).getId()).isEqualTo(savedUser.getId());
+        assertThat(users.get(0).getLogin()).isEqualTo(DEFAULT_LOGIN);
+        assertThat(users).extracting(UserProto::getId).isSorted();
+
+        // Resume the stream after the saved user
+        users.clear();
+        stub.streamAllUsers(cursor.toBuilder().setAfterId(savedUser.getId()).build()).forEachRemaining(users::add);
+        assertThat(users).extracting(UserProto::getId).doesNotContain(savedUser.getId());
+    }
+
     @Test
     @Transactional
     public void getUser() throws Exception {
@@ -511,6 +598,32 @@ public class UserGrpcServiceIntTest {
         assertThat(roles).contains(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
     }
 
+    @Test
+    public void getAllAuthoritiesOnGrpcScheduler() throws Exception {
+        UserGrpcService userGrpcService = new UserGrpcService(userRepository, userService, userProtoMapper,
+            grpcScheduler);
+        String uniqueServerName = "Mock server with gRPC scheduler for " + UserGrpcService.class;
+        Server server = InProcessServerBuilder
+            .forName(uniqueServerName).directExecutor().addService(userGrpcService).build().start();
+        try {
+            UserServiceGrpc.UserServiceBlockingStub schedulerStub =
+                UserServiceGrpc.newBlockingStub(InProcessChannelBuilder.forName(uniqueServerName).directExecutor().build());
+            Authentication authentication = new UsernamePasswordAuthenticationToken(
+                DEFAULT_EMAIL,
+                DEFAULT_PASSWORD,
+                Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN))
+            );
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+
+            // The security context must be propagated to the scheduler threads
+            List<String> roles = new ArrayList<>();
+            schedulerStub.getAllAuthorities(Empty.getDefaultInstance()).forEachRemaining(role -> roles.add(role.getValue()));
+            assertThat(roles).contains(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
     @Test
     public void getAllAuthoritiesRejected() throws Exception {
         Authentication authentication = new UsernamePasswordAuthenticationToken(
@@ -0,0 +1,133 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventWriter class, used outside of any Spring managed transaction.
+ *
+ * @see AuditEventWriter
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+public class AuditEventWriterIntTest {
+
+    private static final int EVENT_COUNT = 250;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getWriter().setAsync(true);
+        applicationProperties.getAudit().getWriter().setBatchSize(100);
+        applicationProperties.getAudit().getWriter().setFlushInterval(10000);
+        metricRegistry = new MetricRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testWriteInBatchesAndFlushOnStop() throws Exception {
+        AuditEventWriter auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, transactionManager,
+            applicationProperties, metricRegistry, new SimpleAsyncTaskExecutor("audit-writer-test-"));
+        auditEventWriter.start();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            auditEventWriter.write(newEvent(i));
+        }
+        auditEventWriter.stop();
+
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(EVENT_COUNT);
+        assertThat(metricRegistry.meter("audit.writer.written").getCount()).isEqualTo(EVENT_COUNT);
+        assertThat(metricRegistry.meter("audit.writer.dropped").getCount()).isZero();
+        assertThat(metricRegistry.timer("audit.writer.flushes").getCount()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    public void testWriteSynchronouslyOnceStopped() throws Exception {
+        AuditEventWriter auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, transactionManager,
+            applicationProperties, metricRegistry, new SimpleAsyncTaskExecutor("audit-writer-test-"));
+        auditEventWriter.start();
+        auditEventWriter.stop();
+
+        auditEventWriter.write(newEvent(0));
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(1);
+        assertThat(metricRegistry.meter("audit.writer.written").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNoEventLostWhileStopping() throws Exception {
+        applicationProperties.getAudit().getWriter().setOverflowPolicy(ApplicationProperties.Audit.Writer.OverflowPolicy.BLOCK);
+        AuditEventWriter auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, transactionManager,
+            applicationProperties, metricRegistry, new SimpleAsyncTaskExecutor("audit-writer-test-"));
+        auditEventWriter.start();
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger writes = new AtomicInteger();
+        CountDownLatch writing = new CountDownLatch(4);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread writer = new Thread(() -> {
+                writing.countDown();
+                // Keeps writing across the stop of the writer, some events being queued and the others written right away
+                for (int j = 0; !stopped.get() || j < EVENT_COUNT; j++) {
+                    auditEventWriter.write(newEvent(writes.getAndIncrement()));
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        writing.await();
+        auditEventWriter.stop();
+        stopped.set(true);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(writes.get());
+        assertThat(metricRegistry.meter("audit.writer.written").getCount()).isEqualTo(writes.get());
+        assertThat(metricRegistry.meter("audit.writer.dropped").getCount()).isZero();
+    }
+
+    private PersistentAuditEvent newEvent(int index) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("test-user");
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(Instant.now());
+        event.setData(Collections.singletonMap("index", String.valueOf(index)));
+        return event;
+    }
+}
@@ -0,0 +1,95 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+/**
+ * Test class for the EntityCursor class, used outside of any Spring managed transaction.
+ *
+ * @see EntityCursor
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+public class EntityCursorIntTest {
+
+    private static final Instant SAMPLE_TIMESTAMP = Instant.parse("2015-08-04T10:11:30Z");
+
+    private static final int EVENT_COUNT = EntityCursor.FETCH_SIZE * 2 + 1;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("test-user");
+            event.setAuditEventType("test-type");
+            event.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(i));
+            event.setData(Collections.singletonMap("index", String.valueOf(i)));
+            events.add(event);
+        }
+        persistenceAuditEventRepository.save(events);
+    }
+
+    @After
+    public void tearDown() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testStreamAcrossFetchSizeChunks() {
+        PageRequest pageRequest = new PageRequest(0, EVENT_COUNT, Sort.Direction.ASC, "auditEventDate");
+        List<String> indexes = new ArrayList<>();
+        try (EntityCursor<PersistentAuditEvent> cursor =
+                 persistenceAuditEventRepository.streamAllByAuditEventDateBetween(null, null, pageRequest)) {
+            cursor.forEachRemaining(event -> indexes.add(event.getData().get("index")));
+            assertThat(cursor.hasNext()).isFalse();
+            try {
+                cursor.next();
+                failBecauseExceptionWasNotThrown(NoSuchElementException.class);
+            } catch (NoSuchElementException e) {
+                // expected
+            }
+        }
+        assertThat(indexes).hasSize(EVENT_COUNT);
+        assertThat(indexes.get(0)).isEqualTo("0");
+        assertThat(indexes.get(EVENT_COUNT - 1)).isEqualTo(String.valueOf(EVENT_COUNT - 1));
+    }
+
+    @Test
+    public void testStreamPageBetweenDates() {
+        PageRequest pageRequest = new PageRequest(1, 5, Sort.Direction.ASC, "auditEventDate");
+        List<Instant> dates = new ArrayList<>();
+        try (EntityCursor<PersistentAuditEvent> cursor = persistenceAuditEventRepository
+                 .streamAllByAuditEventDateBetween(SAMPLE_TIMESTAMP.plusSeconds(10), null, pageRequest)) {
+            cursor.forEachRemaining(event -> dates.add(event.getAuditEventDate()));
+        }
+        assertThat(dates).containsExactly(
+            SAMPLE_TIMESTAMP.plusSeconds(15),
+            SAMPLE_TIMESTAMP.plusSeconds(16),
+            SAMPLE_TIMESTAMP.plusSeconds(17),
+            SAMPLE_TIMESTAMP.plusSeconds(18),
+            SAMPLE_TIMESTAMP.plusSeconds(19));
+    }
+}
@@ -0,0 +1,63 @@
+package com.mycompany.myapp.repository;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the partitioning of the PersistenceAuditEventRepositoryImpl class.
+ *
+ * @see PersistenceAuditEventRepositoryImpl
+ */
+public class PersistenceAuditEventRepositoryImplTest {
+
+    private static final Instant NOW = Instant.parse("2017-10-15T10:00:00Z");
+
+    private static final PersistenceAuditEventRepositoryImpl.Partition FUTURE_PARTITION =
+        new PersistenceAuditEventRepositoryImpl.Partition("p_future", "MAXVALUE");
+
+    @Test
+    public void testNewPartitions() {
+        List<PersistenceAuditEventRepositoryImpl.Partition> partitions = Arrays.asList(
+            new PersistenceAuditEventRepositoryImpl.Partition("p201709",
+                String.valueOf(Instant.parse("2017-10-01T00:00:00Z").getEpochSecond())),
+            new PersistenceAuditEventRepositoryImpl.Partition("p201710",
+                String.valueOf(Instant.parse("2017-11-01T00:00:00Z").getEpochSecond())),
+            FUTURE_PARTITION);
+
+        List<PersistenceAuditEventRepositoryImpl.Partition> newPartitions =
+            PersistenceAuditEventRepositoryImpl.newPartitions(partitions, NOW, Instant.parse("2017-11-15T10:00:00Z"));
+
+        assertThat(newPartitions).extracting(partition -> partition.name).containsExactly("p201711");
+        assertThat(newPartitions).extracting(partition -> partition.upperBound)
+            .containsExactly(Instant.parse("2017-12-01T00:00:00Z").getEpochSecond());
+    }
+
+    @Test
+    public void testNewPartitionsUntilCovered() {
+        List<PersistenceAuditEventRepositoryImpl.Partition> partitions = Arrays.asList(
+            new PersistenceAuditEventRepositoryImpl.Partition("p201711",
+                String.valueOf(Instant.parse("2017-12-01T00:00:00Z").getEpochSecond())),
+            FUTURE_PARTITION);
+
+        assertThat(PersistenceAuditEventRepositoryImpl.newPartitions(partitions, NOW, Instant.parse("2017-11-15T10:00:00Z")))
+            .isEmpty();
+    }
+
+    @Test
+    public void testNewPartitionsAfterAllDropped() {
+        // Only p_future is left, once every monthly partition expired during a downtime
+        List<PersistenceAuditEventRepositoryImpl.Partition> newPartitions = PersistenceAuditEventRepositoryImpl
+            .newPartitions(Collections.singletonList(FUTURE_PARTITION), NOW, Instant.parse("2017-11-15T10:00:00Z"));
+
+        assertThat(newPartitions).extracting(partition -> partition.name).containsExactly("p201710", "p201711");
+        assertThat(newPartitions).extracting(partition -> partition.upperBound).containsExactly(
+            Instant.parse("2017-11-01T00:00:00Z").getEpochSecond(),
+            Instant.parse("2017-12-01T00:00:00Z").getEpochSecond());
+    }
+}
@@ -0,0 +1,108 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import org.hibernate.Hibernate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the indexes and the fetching of the PersistenceAuditEventRepository finders, used outside of any
+ * Spring managed transaction.
+ *
+ * @see PersistenceAuditEventRepository
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+public class PersistenceAuditEventRepositoryIntTest {
+
+    private static final Instant SAMPLE_TIMESTAMP = Instant.parse("2015-08-04T10:11:30Z");
+
+    private static final Timestamp SAMPLE_SQL_TIMESTAMP = Timestamp.from(SAMPLE_TIMESTAMP);
+
+    private static final int EVENT_COUNT = 100;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        // Committed by the save, outside of the @Transactional tests, since the H2 query planner estimates the cost of the
+        // indexes on the committed row count
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("test-user");
+            event.setAuditEventType("test-type");
+            event.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(i));
+            event.setData(Collections.singletonMap("index", String.valueOf(i)));
+            events.add(event);
+        }
+        persistenceAuditEventRepository.save(events);
+    }
+
+    @After
+    public void tearDown() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testFindByPrincipalUsesIndex() {
+        assertThat(explain("select * from jhi_persistent_audit_event where principal = ?", "test-user"))
+            .contains("IDX_PERSISTENT_AUDIT_EVENT");
+    }
+
+    @Test
+    public void testFindByAuditEventDateAfterUsesIndex() {
+        assertThat(explain("select * from jhi_persistent_audit_event where event_date > ?", SAMPLE_SQL_TIMESTAMP))
+            .contains("IDX_PERSISTENT_AUDIT_EVENT_DATE");
+    }
+
+    @Test
+    public void testFindAllByAuditEventDateBetweenUsesIndex() {
+        assertThat(explain("select * from jhi_persistent_audit_event where event_date between ? and ?",
+            SAMPLE_SQL_TIMESTAMP, SAMPLE_SQL_TIMESTAMP))
+            .contains("IDX_PERSISTENT_AUDIT_EVENT_DATE");
+    }
+
+    @Test
+    @Transactional
+    public void testDataIsBatchFetched() {
+        // The events saved by setup(), in the same transaction, are still in the persistence context
+        persistenceAuditEventRepository.flush();
+        entityManager.clear();
+        List<PersistentAuditEvent> events = persistenceAuditEventRepository.findByPrincipal("test-user");
+        assertThat(events).hasSize(EVENT_COUNT);
+        assertThat(events.stream().noneMatch(event -> Hibernate.isInitialized(event.getData()))).isTrue();
+
+        assertThat(events.get(0).getData()).hasSize(1);
+        assertThat(events.stream().allMatch(event -> Hibernate.isInitialized(event.getData()))).isTrue();
+    }
+
+    private String explain(String sql, Object... args) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class, args);
+    }
+}
@@ -0,0 +1,163 @@
+package com.mycompany.myapp.repository;
+
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.config.Constants;
+import com.mycompany.myapp.config.audit.AuditEventConverter;
+import com.mycompany.myapp.grpc.AuditEvent;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the SegmentLogAuditEventRepository class.
+ *
+ * @see SegmentLogAuditEventRepository
+ */
+public class SegmentLogAuditEventRepositoryTest {
+
+    private static final Instant SAMPLE_TIMESTAMP = Instant.parse("2015-08-04T10:11:30Z");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ApplicationProperties applicationProperties;
+
+    private SegmentLogAuditEventRepository repository;
+
+    @Before
+    public void setup() throws IOException {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getSegmentLog().setDirectory(temporaryFolder.getRoot().getPath());
+        // Small segments and index intervals, for the tests to span several of them
+        applicationProperties.getAudit().getSegmentLog().setSegmentSize(1024);
+        applicationProperties.getAudit().getSegmentLog().setIndexInterval(128);
+        repository = newRepository();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    public void testStreamAllByAuditEventDateBetween() {
+        for (int i = 0; i < 100; i++) {
+            repository.add(newEvent("test-user", i));
+        }
+        assertThat(temporaryFolder.getRoot().list((dir, name) -> name.endsWith(".log")).length).isGreaterThan(1);
+
+        List<AuditEvent> events = toList(repository.streamAllByAuditEventDateBetween(
+            SAMPLE_TIMESTAMP.plusSeconds(20), SAMPLE_TIMESTAMP.plusSeconds(79), new PageRequest(0, 100)));
+        assertThat(events).hasSize(60);
+        assertThat(events.get(0).getDataMapMap()).containsEntry("index", "20");
+        assertThat(events.get(59).getDataMapMap()).containsEntry("index", "79");
+        assertThat(events.get(0).getPrincipal()).isEqualTo("test-user");
+        assertThat(events.get(0).getTimestamp().getSeconds()).isEqualTo(SAMPLE_TIMESTAMP.plusSeconds(20).getEpochSecond());
+
+        events = toList(repository.streamAllByAuditEventDateBetween(null, null, new PageRequest(3, 30)));
+        assertThat(events).hasSize(10);
+        assertThat(events.get(0).getDataMapMap()).containsEntry("index", "90");
+    }
+
+    @Test
+    public void testFind() {
+        repository.add(newEvent("test-user", 0));
+        repository.add(newEvent("other-test-user", 1));
+        repository.add(newEvent("test-user", 2));
+        repository.add(newEvent(Constants.ANONYMOUS_USER, 3));
+
+        List<org.springframework.boot.actuate.audit.AuditEvent> events =
+            repository.find("test-user", Date.from(SAMPLE_TIMESTAMP));
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getData()).containsEntry("index", "2");
+        assertThat(events.get(0).getTimestamp()).isEqualTo(Date.from(SAMPLE_TIMESTAMP.plusSeconds(2)));
+
+        assertThat(repository.find(null, null, "test-type")).hasSize(3);
+    }
+
+    @Test
+    public void testReopenAfterPartialWrite() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            repository.add(newEvent("test-user", i));
+        }
+        repository.close();
+        File[] logFiles = temporaryFolder.getRoot().listFiles((dir, name) -> name.endsWith(".log"));
+        try (RandomAccessFile lastSegment = new RandomAccessFile(logFiles[logFiles.length - 1], "rw")) {
+            lastSegment.setLength(lastSegment.length() - 1);
+        }
+
+        repository = newRepository();
+        repository.add(newEvent("test-user", 10));
+
+        List<AuditEvent> events = toList(repository.streamAllByAuditEventDateBetween(null, null, new PageRequest(0, 100)));
+        assertThat(events).extracting(event -> event.getDataMapMap().get("index"))
+            .containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "10");
+    }
+
+    @Test
+    public void testReopenWithEmptyLastSegment() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            repository.add(newEvent("test-user", i));
+        }
+        repository.close();
+        // Rolled right before the stop
+        assertThat(new File(temporaryFolder.getRoot(), String.format("%020d.log", Integer.MAX_VALUE)).createNewFile()).isTrue();
+
+        repository = newRepository();
+        // Out of order, so appended at the time of the last event of the previous segment
+        repository.add(newEvent("test-user", 0));
+
+        List<AuditEvent> events = toList(repository.streamAllByAuditEventDateBetween(
+            SAMPLE_TIMESTAMP.plusSeconds(9), null, new PageRequest(0, 100)));
+        assertThat(events).extracting(event -> event.getDataMapMap().get("index")).containsExactly("9", "0");
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        applicationProperties.getAudit().getSegmentLog().setFlushEvents(2);
+        repository.add(newEvent("test-user", 0));
+        repository.add(newEvent("test-user", 1));
+        repository.add(newEvent("test-user", 2));
+
+        repository.flush();
+        repository.flush();
+
+        assertThat(toList(repository.streamAllByAuditEventDateBetween(null, null, new PageRequest(0, 100)))).hasSize(3);
+    }
+
+    private SegmentLogAuditEventRepository newRepository() throws IOException {
+        SegmentLogAuditEventRepository repository =
+            new SegmentLogAuditEventRepository(new AuditEventConverter(), applicationProperties,
+                new AuditEventBroadcaster(applicationProperties, new MetricRegistry()));
+        repository.open();
+        return repository;
+    }
+
+    private org.springframework.boot.actuate.audit.AuditEvent newEvent(String principal, int index) {
+        return new org.springframework.boot.actuate.audit.AuditEvent(Date.from(SAMPLE_TIMESTAMP.plusSeconds(index)),
+            principal, "test-type", Collections.singletonMap("index", String.valueOf(index)));
+    }
+
+    private static List<AuditEvent> toList(Iterator<AuditEvent> iterator) {
+        List<AuditEvent> events = new ArrayList<>();
+        iterator.forEachRemaining(events::add);
+        return events;
+    }
+}
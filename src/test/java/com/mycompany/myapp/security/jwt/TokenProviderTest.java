@@ -1,5 +1,6 @@
 package com.mycompany.myapp.security.jwt;
 
+import com.codahale.metrics.MetricRegistry;
 import com.mycompany.myapp.security.AuthoritiesConstants;
 import io.github.jhipster.config.JHipsterProperties;
 import io.jsonwebtoken.Jwts;
@@ -16,6 +17,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -24,12 +26,14 @@ public class TokenProviderTest {
     private final String secretKey = "e5c9ee274ae87bc031adda32e27fa98b9290da83";
     private final long ONE_MINUTE = 60000;
     private JHipsterProperties jHipsterProperties;
+    private MetricRegistry metricRegistry;
     private TokenProvider tokenProvider;
 
     @Before
     public void setup() {
         jHipsterProperties = Mockito.mock(JHipsterProperties.class);
-        tokenProvider = new TokenProvider(jHipsterProperties);
+        metricRegistry = new MetricRegistry();
+        tokenProvider = new TokenProvider(jHipsterProperties, metricRegistry);
         ReflectionTestUtils.setField(tokenProvider, "secretKey", secretKey);
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
     }
@@ -79,6 +83,55 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testParseAuthentication() {
+        Authentication authentication = createAuthentication();
+        String token = tokenProvider.createToken(authentication, false);
+
+        Optional<Authentication> parsedAuthentication = tokenProvider.parseAuthentication(token);
+
+        assertThat(parsedAuthentication).isPresent();
+        assertThat(parsedAuthentication.get().getName()).isEqualTo("anonymous");
+        assertThat(parsedAuthentication.get().getCredentials()).isEqualTo(token);
+        assertThat(tokenProvider.parseAuthentication(token.substring(1))).isEmpty();
+        assertThat(tokenProvider.parseAuthentication(createTokenWithDifferentSignature())).isEmpty();
+    }
+
+    @Test
+    public void testValidatedTokenIsCached() {
+        Authentication authentication = createAuthentication();
+        String token = tokenProvider.createToken(authentication, false);
+
+        assertThat(tokenProvider.validateToken(token)).isEqualTo(true);
+        assertThat(tokenProvider.validateToken(token)).isEqualTo(true);
+        Authentication cachedAuthentication = tokenProvider.getAuthentication(token);
+
+        assertThat(metricRegistry.meter("security.jwt.cache.misses").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter("security.jwt.cache.hits").getCount()).isEqualTo(1);
+        assertThat(cachedAuthentication.getName()).isEqualTo("anonymous");
+        assertThat(cachedAuthentication.getCredentials()).isEqualTo(token);
+        assertThat(cachedAuthentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.ANONYMOUS);
+        assertThat(cachedAuthentication).isNotSameAs(tokenProvider.getAuthentication(token));
+        // The cache doesn't hold the token itself
+        TokenAuthenticationCache authenticationCache =
+            (TokenAuthenticationCache) ReflectionTestUtils.getField(tokenProvider, "authenticationCache");
+        assertThat(authenticationCache.get(token).getCredentials()).isNull();
+    }
+
+    @Test
+    public void testExpiredTokenIsNotCached() {
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", -ONE_MINUTE);
+
+        Authentication authentication = createAuthentication();
+        String token = tokenProvider.createToken(authentication, false);
+
+        assertThat(tokenProvider.validateToken(token)).isEqualTo(false);
+        assertThat(tokenProvider.validateToken(token)).isEqualTo(false);
+        assertThat(metricRegistry.meter("security.jwt.cache.misses").getCount()).isEqualTo(2);
+        assertThat(metricRegistry.meter("security.jwt.cache.hits").getCount()).isEqualTo(0);
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
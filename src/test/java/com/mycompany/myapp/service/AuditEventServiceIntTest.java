@@ -0,0 +1,67 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.domain.PersistentAuditEvent;
+import com.mycompany.myapp.repository.PersistenceAuditEventRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventService class.
+ *
+ * @see AuditEventService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+public class AuditEventServiceIntTest {
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        // Not rolled back, as the old audit events are removed outside of the transaction of the test
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testRemoveOldAuditEvents() {
+        PersistentAuditEvent oldEvent = newEvent(Instant.now().minus(31, ChronoUnit.DAYS));
+        PersistentAuditEvent recentEvent = newEvent(Instant.now().minus(29, ChronoUnit.DAYS));
+        persistenceAuditEventRepository.saveAndFlush(oldEvent);
+        persistenceAuditEventRepository.saveAndFlush(recentEvent);
+
+        auditEventService.removeOldAuditEvents();
+
+        assertThat(persistenceAuditEventRepository.findAll()).extracting("id").containsExactly(recentEvent.getId());
+    }
+
+    private PersistentAuditEvent newEvent(Instant auditEventDate) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("test-user");
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(auditEventDate);
+        event.setData(Collections.singletonMap("test-key", "test-value"));
+        return event;
+    }
+}
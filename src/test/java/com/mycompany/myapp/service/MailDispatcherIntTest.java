@@ -0,0 +1,195 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.MailMessage;
+import com.mycompany.myapp.repository.MailMessageRepository;
+
+import com.codahale.metrics.MetricRegistry;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.github.jhipster.config.JHipsterProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.mail.internet.MimeMessage;
+import java.net.ServerSocket;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Test class for the MailDispatcher class, against an in-process SMTP server.
+ *
+ * @see MailDispatcher
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+public class MailDispatcherIntTest {
+
+    @Autowired
+    private MailMessageRepository mailMessageRepository;
+
+    @Autowired
+    private JHipsterProperties jHipsterProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private GreenMail greenMail;
+
+    @Before
+    public void setup() {
+        mailMessageRepository.deleteAll();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getMail().setBatchSize(2);
+        applicationProperties.getMail().setPollInterval(100);
+        applicationProperties.getMail().setMaxAttempts(3);
+        applicationProperties.getMail().setInitialBackoff(60000);
+        applicationProperties.getMail().setMaxBackoff(90000);
+        metricRegistry = new MetricRegistry();
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+    }
+
+    @After
+    public void tearDown() {
+        greenMail.stop();
+        mailMessageRepository.deleteAll();
+    }
+
+    @Test
+    public void testDispatchInBatches() throws Exception {
+        mailMessageRepository.save(Arrays.asList(newMailMessage(1), newMailMessage(2), newMailMessage(3)));
+
+        int sent = newMailDispatcher(ServerSetupTest.SMTP.getPort()).dispatch();
+
+        assertThat(sent).isEqualTo(3);
+        MimeMessage[] receivedMessages = greenMail.getReceivedMessages();
+        assertThat(receivedMessages).extracting("subject")
+            .containsExactly("subject 1", "subject 2", "subject 3");
+        assertThat(receivedMessages[0].getAllRecipients()[0].toString()).isEqualTo("john.doe1@example.com");
+        assertThat(receivedMessages[0].getFrom()[0].toString()).isEqualTo("test@localhost");
+        assertThat(mailMessageRepository.count()).isZero();
+        assertThat(metricRegistry.meter("mail.dispatcher.sent").getCount()).isEqualTo(3);
+        // A full batch, then a batch with the remaining email
+        assertThat(metricRegistry.timer("mail.dispatcher.batches").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws Exception {
+        MailMessage mailMessage = mailMessageRepository.save(newMailMessage(1));
+        MailDispatcher mailDispatcher = newMailDispatcher(unusedPort());
+
+        Instant before = Instant.now();
+        assertThat(mailDispatcher.dispatch()).isZero();
+
+        MailMessage failedMessage = mailMessageRepository.findOne(mailMessage.getId());
+        assertThat(failedMessage.getAttempts()).isEqualTo(1);
+        assertThat(failedMessage.getNextAttemptDate()).isBetween(before.plusMillis(60000), Instant.now().plusMillis(60000));
+        assertThat(failedMessage.getLastError()).isNotEmpty();
+        assertThat(metricRegistry.meter("mail.dispatcher.failed").getCount()).isEqualTo(1);
+
+        // Not due yet
+        assertThat(mailDispatcher.dispatch()).isZero();
+        assertThat(mailMessageRepository.findOne(mailMessage.getId()).getAttempts()).isEqualTo(1);
+
+        // The backoff doubles, up to max-backoff
+        failedMessage.setNextAttemptDate(Instant.now());
+        mailMessageRepository.save(failedMessage);
+        before = Instant.now();
+        assertThat(mailDispatcher.dispatch()).isZero();
+        failedMessage = mailMessageRepository.findOne(mailMessage.getId());
+        assertThat(failedMessage.getAttempts()).isEqualTo(2);
+        assertThat(failedMessage.getNextAttemptDate()).isBetween(before.plusMillis(90000), Instant.now().plusMillis(90000));
+    }
+
+    @Test
+    public void testAbandonAfterMaxAttempts() throws Exception {
+        MailMessage mailMessage = newMailMessage(1);
+        mailMessage.setAttempts(2);
+        mailMessageRepository.save(mailMessage);
+
+        assertThat(newMailDispatcher(unusedPort()).dispatch()).isZero();
+
+        assertThat(mailMessageRepository.count()).isZero();
+        assertThat(metricRegistry.meter("mail.dispatcher.abandoned").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLeaseWhileSendingAndRetryOnAnyException() throws Exception {
+        MailMessage mailMessage = mailMessageRepository.save(newMailMessage(1));
+        Instant before = Instant.now();
+        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl() {
+            @Override
+            public void send(MimeMessage... mimeMessages) {
+                // Claimed by a committed transaction, and not locked while it is being sent
+                assertThat(mailMessageRepository.findOne(mailMessage.getId()).getNextAttemptDate())
+                    .isGreaterThan(before.plusMillis(applicationProperties.getMail().getLease() - 1000));
+                throw new IllegalStateException("Not a MailException");
+            }
+        };
+        MailDispatcher mailDispatcher = new MailDispatcher(mailMessageRepository, javaMailSender, jHipsterProperties,
+            transactionManager, applicationProperties, metricRegistry, new SimpleAsyncTaskExecutor("mail-dispatcher-test-"));
+
+        assertThat(mailDispatcher.dispatch()).isZero();
+
+        MailMessage failedMessage = mailMessageRepository.findOne(mailMessage.getId());
+        assertThat(failedMessage.getAttempts()).isEqualTo(1);
+        assertThat(failedMessage.getNextAttemptDate()).isBetween(before.plusMillis(60000), Instant.now().plusMillis(60000));
+        assertThat(failedMessage.getLastError()).contains("Not a MailException");
+        assertThat(metricRegistry.meter("mail.dispatcher.failed").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPollInBackground() throws Exception {
+        MailDispatcher mailDispatcher = newMailDispatcher(ServerSetupTest.SMTP.getPort());
+        mailDispatcher.start();
+        try {
+            mailMessageRepository.save(newMailMessage(1));
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> greenMail.getReceivedMessages().length == 1);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> mailMessageRepository.count() == 0);
+        } finally {
+            mailDispatcher.stop();
+        }
+    }
+
+    private MailDispatcher newMailDispatcher(int port) {
+        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost("localhost");
+        javaMailSender.setPort(port);
+        return new MailDispatcher(mailMessageRepository, javaMailSender, jHipsterProperties, transactionManager,
+            applicationProperties, metricRegistry, new SimpleAsyncTaskExecutor("mail-dispatcher-test-"));
+    }
+
+    private static MailMessage newMailMessage(int i) {
+        MailMessage mailMessage = new MailMessage();
+        mailMessage.setTo("john.doe" + i + "@example.com");
+        mailMessage.setSubject("subject " + i);
+        mailMessage.setContent("content " + i);
+        return mailMessage;
+    }
+
+    private static int unusedPort() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
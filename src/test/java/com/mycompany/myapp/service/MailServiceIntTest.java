@@ -2,66 +2,96 @@ package com.mycompany.myapp.service;
 import com.mycompany.myapp.config.Constants;
 
 import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.config.ApplicationProperties;
+import com.mycompany.myapp.domain.MailMessage;
 import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.repository.MailMessageRepository;
+import com.codahale.metrics.MetricRegistry;
 import io.github.jhipster.config.JHipsterProperties;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
+import org.mockito.Matchers;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.context.MessageSource;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.test.context.junit4.SpringRunner;
-import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.mail.Multipart;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = AgathaApp.class)
+@Transactional
 public class MailServiceIntTest {
 
     @Autowired
     private JHipsterProperties jHipsterProperties;
 
     @Autowired
-    private MessageSource messageSource;
+    private MailTemplateRenderer mailTemplateRenderer;
 
     @Autowired
-    private SpringTemplateEngine templateEngine;
+    private MailMessageRepository mailMessageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
 
     @Spy
     private JavaMailSenderImpl javaMailSender;
 
-    @Captor
-    private ArgumentCaptor messageCaptor;
+    private List<MimeMessage> sentMessages;
 
     private MailService mailService;
 
+    private MailDispatcher mailDispatcher;
+
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        doNothing().when(javaMailSender).send(any(MimeMessage.class));
-        mailService = new MailService(jHipsterProperties, javaMailSender, messageSource, templateEngine);
+        // Other tests may have committed emails
+        mailMessageRepository.deleteAll();
+        sentMessages = new ArrayList<>();
+        doAnswer(invocation -> {
+            for (Object message : invocation.getArguments()) {
+                sentMessages.add((MimeMessage) message);
+            }
+            return null;
+        }).when(javaMailSender).send(Matchers.<MimeMessage[]>anyVararg());
+        mailService = new MailService(mailTemplateRenderer, mailMessageRepository);
+        mailDispatcher = new MailDispatcher(mailMessageRepository, javaMailSender, jHipsterProperties, transactionManager,
+            applicationProperties, new MetricRegistry(), new SyncTaskExecutor());
+    }
+
+    private MimeMessage dispatchSingleMessage() {
+        assertThat(mailDispatcher.dispatch()).isEqualTo(1);
+        assertThat(sentMessages).hasSize(1);
+        assertThat(mailMessageRepository.findAll()).isEmpty();
+        return sentMessages.get(0);
     }
 
     @Test
     public void testSendEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject","testContent", false, false);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
@@ -73,8 +103,7 @@ public class MailServiceIntTest {
     @Test
     public void testSendHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject","testContent", false, true);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
@@ -86,8 +115,7 @@ public class MailServiceIntTest {
     @Test
     public void testSendMultipartEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject","testContent", true, false);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart)((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
         ByteArrayOutputStream aos = new ByteArrayOutputStream();
@@ -103,8 +131,7 @@ public class MailServiceIntTest {
     @Test
     public void testSendMultipartHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject","testContent", true, true);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart)((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
         ByteArrayOutputStream aos = new ByteArrayOutputStream();
@@ -124,8 +151,7 @@ public class MailServiceIntTest {
         user.setEmail("john.doe@example.com");
         user.setLangKey("en");
         mailService.sendEmailFromTemplate(user, "testEmail", "email.test.title");
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         assertThat(message.getSubject()).isEqualTo("test title");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
@@ -140,8 +166,7 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendActivationEmail(user);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -155,8 +180,7 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendCreationEmail(user);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -170,18 +194,48 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendPasswordResetMail(user);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = dispatchSingleMessage();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
         assertThat(message.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
     }
 
+    @Test
+    public void testSendEmailInOutbox() throws Exception {
+        mailService.sendEmail("john.doe@example.com", "testSubject","testContent", false, true);
+        assertThat(sentMessages).isEmpty();
+        List<MailMessage> mailMessages = mailMessageRepository.findAll();
+        assertThat(mailMessages).hasSize(1);
+        MailMessage mailMessage = mailMessages.get(0);
+        assertThat(mailMessage.getTo()).isEqualTo("john.doe@example.com");
+        assertThat(mailMessage.getSubject()).isEqualTo("testSubject");
+        assertThat(mailMessage.getContent()).isEqualTo("testContent");
+        assertThat(mailMessage.isMultipart()).isFalse();
+        assertThat(mailMessage.isHtml()).isTrue();
+        assertThat(mailMessage.getAttempts()).isEqualTo(0);
+        assertThat(mailMessage.getNextAttemptDate()).isLessThanOrEqualTo(Instant.now());
+    }
+
     @Test
     public void testSendEmailWithException() throws Exception {
-        doThrow(MailSendException.class).when(javaMailSender).send(any(MimeMessage.class));
+        doThrow(new MailSendException("Mail server connection failed")).when(javaMailSender)
+            .send(Matchers.<MimeMessage[]>anyVararg());
         mailService.sendEmail("john.doe@example.com", "testSubject","testContent", false, false);
+        assertThat(mailDispatcher.dispatch()).isEqualTo(0);
+        List<MailMessage> mailMessages = mailMessageRepository.findAll();
+        assertThat(mailMessages).hasSize(1);
+        assertThat(mailMessages.get(0).getAttempts()).isEqualTo(1);
+        assertThat(mailMessages.get(0).getNextAttemptDate()).isGreaterThan(Instant.now());
+        assertThat(mailMessages.get(0).getLastError()).contains("Mail server connection failed");
+    }
+
+    @Test
+    public void testSendEmailFromTemplateWithoutEmail() throws Exception {
+        User user = new User();
+        user.setLogin("john");
+        mailService.sendEmailFromTemplate(user, "testEmail", "email.test.title");
+        assertThat(mailMessageRepository.findAll()).isEmpty();
     }
 
 }
@@ -0,0 +1,121 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.domain.User;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.MessageSource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the MailTemplateRenderer class, checking the cached templates against Thymeleaf.
+ *
+ * @see MailTemplateRenderer
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+public class MailTemplateRendererIntTest {
+
+    private static final String[] TEMPLATES = {"activationEmail", "creationEmail", "passwordResetEmail"};
+
+    @Autowired
+    private JHipsterProperties jHipsterProperties;
+
+    @Autowired
+    private MessageSource messageSource;
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    private MailTemplateRenderer cachingRenderer;
+
+    private MailTemplateRenderer thymeleafRenderer;
+
+    @Before
+    public void setup() {
+        ThymeleafProperties thymeleafProperties = new ThymeleafProperties();
+        cachingRenderer = new MailTemplateRenderer(jHipsterProperties, messageSource, templateEngine, thymeleafProperties);
+        thymeleafProperties = new ThymeleafProperties();
+        thymeleafProperties.setCache(false);
+        thymeleafRenderer = new MailTemplateRenderer(jHipsterProperties, messageSource, templateEngine, thymeleafProperties);
+    }
+
+    @Test
+    public void testRenderContentLikeThymeleaf() {
+        for (String template : TEMPLATES) {
+            for (int i = 0; i < 3; i++) {
+                User user = newUser("john" + i);
+                String content = cachingRenderer.renderContent(user, template);
+                assertThat(content).isEqualTo(thymeleafRenderer.renderContent(user, template));
+                assertThat(content).contains("john" + i);
+            }
+        }
+        assertThat(cachingRenderer.renderContent(newUser("john"), "creationEmail")).contains("key=resetkey");
+        assertThat(cachingRenderer.renderContent(newUser("john"), "activationEmail")).contains("key=activationkey");
+    }
+
+    @Test
+    public void testRenderContentWithEscapedOrMissingProperties() {
+        User user = newUser("o'neil");
+        user.setResetKey(null);
+        for (String template : TEMPLATES) {
+            assertThat(cachingRenderer.renderContent(user, template))
+                .isEqualTo(thymeleafRenderer.renderContent(user, template));
+        }
+        assertThat(cachingRenderer.renderContent(user, "creationEmail")).doesNotContain("o'neil");
+    }
+
+    @Test
+    public void testTemplatesAreCompiled() {
+        for (String template : TEMPLATES) {
+            cachingRenderer.renderContent(newUser("john"), template);
+            assertThat(cachingRenderer.isCompiled(template, "en")).as(template).isTrue();
+        }
+    }
+
+    @Test
+    public void testRenderContentOfTransformingTemplate() {
+        for (int i = 0; i < 3; i++) {
+            User user = newUser("john" + i);
+            String content = cachingRenderer.renderContent(user, "transformingEmail");
+            assertThat(content).isEqualTo(thymeleafRenderer.renderContent(user, "transformingEmail"));
+            assertThat(content).contains("JOHN" + i).contains("email=john" + i + "%40example.com");
+        }
+        assertThat(cachingRenderer.isCompiled("transformingEmail", "en")).isFalse();
+    }
+
+    @Test
+    public void testRenderContentWithoutLangKey() {
+        User user = newUser("john");
+        user.setLangKey(null);
+        assertThat(cachingRenderer.renderContent(user, "creationEmail"))
+            .isEqualTo(thymeleafRenderer.renderContent(newUser("john"), "creationEmail"));
+    }
+
+    @Test
+    public void testRenderSubject() {
+        User user = newUser("john");
+        assertThat(cachingRenderer.renderSubject(user, "email.reset.title")).isEqualTo("agatha password reset");
+        assertThat(cachingRenderer.renderSubject(user, "email.reset.title")).isEqualTo("agatha password reset");
+        assertThat(cachingRenderer.renderSubject(user, "email.activation.title")).isEqualTo("agatha account activation");
+    }
+
+    private static User newUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(login + "@example.com");
+        user.setLangKey("en");
+        user.setActivationKey("activationkey");
+        user.setResetKey("resetkey");
+        return user;
+    }
+}
@@ -0,0 +1,163 @@
+package com.mycompany.myapp.service;
+
+import com.mycompany.myapp.AgathaApp;
+import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.repository.AuthorityRepository;
+import com.mycompany.myapp.repository.UserRepository;
+import com.mycompany.myapp.service.dto.UserDTO;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the UserCache.
+ *
+ * @see UserCache
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = AgathaApp.class)
+@Transactional
+public class UserCacheIntTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MailService mailService;
+
+    private CacheManager cacheManager;
+
+    private UserCache userCache;
+
+    private UserService userService;
+
+    private User user;
+
+    @Before
+    public void init() {
+        // The caches are disabled in the tests
+        cacheManager = new ConcurrentMapCacheManager();
+        userCache = new UserCache(userRepository, cacheManager);
+        userService = new UserService(userRepository, passwordEncoder, authorityRepository, userCache, mailService);
+
+        user = new User();
+        user.setLogin("johndoe");
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail("johndoe@localhost");
+        user.setFirstName("john");
+        user.setLastName("doe");
+        user.setLangKey("en");
+        userRepository.saveAndFlush(user);
+    }
+
+    @Test
+    public void assertThatUserIsCachedByLoginEmailAndId() {
+        User cachedUser = userCache.findOneByLogin("johndoe").orElse(null);
+
+        assertThat(cachedUser).isNotNull();
+        assertThat(cacheManager.getCache(UserCache.USERS_CACHE).get("johndoe").get()).isSameAs(cachedUser);
+        assertThat(cacheManager.getCache(UserCache.USERS_BY_EMAIL_CACHE).get("johndoe@localhost").get())
+            .isEqualTo("johndoe");
+        assertThat(cacheManager.getCache(UserCache.USERS_BY_ID_CACHE).get(user.getId()).get()).isEqualTo("johndoe");
+        assertThat(userCache.findOneByEmailIgnoreCase("JohnDoe@Localhost")).containsSame(cachedUser);
+        assertThat(userCache.findOneById(user.getId())).containsSame(cachedUser);
+    }
+
+    @Test
+    public void assertThatUserIsLoadedOnEmailLookup() {
+        User cachedUser = userCache.findOneByEmailIgnoreCase("JOHNDOE@LOCALHOST").orElse(null);
+
+        assertThat(cachedUser).isNotNull();
+        assertThat(cachedUser.getLogin()).isEqualTo("johndoe");
+        assertThat(cachedUser.getAuthorities()).isNotNull();
+        assertThat(cacheManager.getCache(UserCache.USERS_CACHE).get("johndoe").get()).isSameAs(cachedUser);
+    }
+
+    @Test
+    public void assertThatStaleIndexEntryIsAMiss() {
+        userCache.findOneByLogin("johndoe");
+        cacheManager.getCache(UserCache.USERS_BY_EMAIL_CACHE).put("previous@localhost", "johndoe");
+        cacheManager.getCache(UserCache.USERS_BY_ID_CACHE).put(Long.MAX_VALUE, "johndoe");
+
+        assertThat(userCache.findOneByEmailIgnoreCase("previous@localhost")).isNotPresent();
+        assertThat(userCache.findOneById(Long.MAX_VALUE)).isNotPresent();
+    }
+
+    @Test
+    public void assertThatUnknownUserIsNotCached() {
+        assertThat(userCache.findOneByLogin("unknown")).isNotPresent();
+        assertThat(userCache.findOneByEmailIgnoreCase("unknown@localhost")).isNotPresent();
+
+        User unknown = new User();
+        unknown.setLogin("unknown");
+        unknown.setPassword(RandomStringUtils.random(60));
+        unknown.setActivated(true);
+        unknown.setEmail("unknown@localhost");
+        userRepository.saveAndFlush(unknown);
+
+        assertThat(userCache.findOneByLogin("unknown")).isPresent();
+        assertThat(userCache.findOneByEmailIgnoreCase("unknown@localhost")).isPresent();
+    }
+
+    @Test
+    public void assertThatEvictRemovesUser() {
+        User cachedUser = userCache.findOneByLogin("johndoe").orElse(null);
+
+        userCache.evict(cachedUser);
+
+        assertThat(cacheManager.getCache(UserCache.USERS_CACHE).get("johndoe")).isNull();
+        assertThat(userCache.findOneByEmailIgnoreCase("johndoe@localhost")).isPresent();
+    }
+
+    @Test
+    public void assertThatUserChangedDuringLookupIsNotCached() {
+        UserRepository concurrentlyChangedRepository = mock(UserRepository.class);
+        UserCache concurrentlyChangedCache = new UserCache(concurrentlyChangedRepository, cacheManager);
+        when(concurrentlyChangedRepository.findOneWithAuthoritiesByLogin("johndoe")).thenAnswer(invocation -> {
+            // The user is changed between the read of its previous version and its caching
+            concurrentlyChangedCache.evict(user);
+            return Optional.of(user);
+        });
+
+        assertThat(concurrentlyChangedCache.findOneByLogin("johndoe")).containsSame(user);
+
+        assertThat(cacheManager.getCache(UserCache.USERS_CACHE).get("johndoe")).isNull();
+    }
+
+    @Test
+    public void assertThatRenamedUserIsEvictedByPreviousLogin() {
+        userCache.findOneByLogin("johndoe");
+        UserDTO userDTO = new UserDTO(user);
+        userDTO.setLogin("janedoe");
+
+        userService.updateUser(userDTO);
+
+        assertThat(cacheManager.getCache(UserCache.USERS_CACHE).get("johndoe")).isNull();
+        assertThat(userCache.findOneByLogin("johndoe")).isNotPresent();
+        Optional<User> renamedUser = userCache.findOneByLogin("janedoe");
+        assertThat(renamedUser).isPresent();
+        assertThat(userCache.findOneById(user.getId())).containsSame(renamedUser.get());
+    }
+}
@@ -3,6 +3,7 @@ package com.mycompany.myapp.service;
 import com.mycompany.myapp.AgathaApp;
 import com.mycompany.myapp.config.Constants;
 import com.mycompany.myapp.domain.User;
+import com.mycompany.myapp.repository.UserLoginAndEmail;
 import com.mycompany.myapp.repository.UserRepository;
 import com.mycompany.myapp.service.dto.UserDTO;
 import com.mycompany.myapp.service.util.RandomUtil;
@@ -173,4 +174,21 @@ public class UserServiceIntTest {
         assertThat(userRepository.findOneByLogin("johndoe")).isNotPresent();
     }
 
+    @Test
+    @Transactional
+    public void testFindLoginAndEmailByLoginOrEmail() {
+        userRepository.saveAndFlush(user);
+
+        List<UserLoginAndEmail> holders = userRepository.findAllLoginAndEmailByLoginOrEmail("johndoe", "other@localhost");
+        assertThat(holders).extracting("login").containsExactly("johndoe");
+
+        holders = userRepository.findAllLoginAndEmailByLoginOrEmail("other", "JohnDoe@Localhost");
+        assertThat(holders).hasSize(1);
+        assertThat(holders.get(0).getId()).isEqualTo(user.getId());
+        assertThat(holders.get(0).getEmail()).isEqualTo("johndoe@localhost");
+
+        holders = userRepository.findAllLoginAndEmailByLoginOrEmail("other", "other@localhost");
+        assertThat(holders).isEmpty();
+    }
+
 }